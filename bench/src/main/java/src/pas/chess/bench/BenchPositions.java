@@ -0,0 +1,74 @@
+package src.pas.chess.bench;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.GameConverter;
+
+
+/**
+ * The corpus the benchmarks run over (positions.fen next to this class: openings, middlegames, and a few
+ * endgames), and the conversion of its FENs into the library's Game for the benchmarks of code that only works
+ * on DFSTreeNodes.
+ *
+ * The library only makes Games from a SEPIA state, so toGame goes through GameConverter.toGame (which calls
+ * Game's private constructor). That is fine for setting up a benchmark, nothing timed goes through it.
+ */
+public final class BenchPositions
+    extends Object
+{
+
+	public static final String CORPUS_RESOURCE = "positions.fen";
+
+	private BenchPositions() {}
+
+	/**
+	 * The FENs of the corpus, in file order (blank lines and lines starting with # are skipped)
+	 */
+	public static List<String> loadFens()
+	{
+		List<String> fens = new ArrayList<String>();
+		try(InputStream stream = BenchPositions.class.getResourceAsStream(BenchPositions.CORPUS_RESOURCE))
+		{
+			if(stream == null)
+			{
+				throw new IllegalStateException("BenchPositions.loadFens: " + BenchPositions.CORPUS_RESOURCE + " is not on the classpath");
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+				if(!line.isEmpty() && !line.startsWith("#"))
+				{
+					fens.add(line);
+				}
+			}
+		} catch(IOException e)
+		{
+			throw new IllegalStateException("BenchPositions.loadFens: could not read " + BenchPositions.CORPUS_RESOURCE, e);
+		}
+		return fens;
+	}
+
+	/**
+	 * A library Game with the same board, side to move, and castling rights as the FEN
+	 */
+	public static Game toGame(String fen)
+	{
+		return GameConverter.toGame(Fen.toPosition(fen));
+	}
+
+}
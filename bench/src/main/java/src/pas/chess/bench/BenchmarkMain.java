@@ -0,0 +1,59 @@
+package src.pas.chess.bench;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * org.openjdk.jmh.Main with the GC profiler always on, so that every run reports the allocation rate
+ * (gc.alloc.rate.norm: bytes allocated per operation) next to the throughput. Takes the usual JMH options, e.g.
+ *     java -cp "bench/target/benchmarks.jar:lib/*" src.pas.chess.bench.BenchmarkMain Heuristics -f 1 -wi 2
+ */
+public class BenchmarkMain
+    extends Object
+{
+
+	public static void main(String[] args) throws IOException, RunnerException
+	{
+		CommandLineOptions commandLineOptions = null;
+		try
+		{
+			commandLineOptions = new CommandLineOptions(args);
+		} catch(CommandLineOptionException e)
+		{
+			System.err.println("BenchmarkMain.main [ERROR]: " + e.getMessage());
+			System.exit(-1);
+		}
+
+		if(commandLineOptions.shouldHelp())
+		{
+			commandLineOptions.showHelp();
+			return;
+		}
+
+		Options options = new OptionsBuilder()
+			.parent(commandLineOptions)
+			.addProfiler(GCProfiler.class)
+			.build();
+		Runner runner = new Runner(options);
+		if(commandLineOptions.shouldList())
+		{
+			runner.list();
+			return;
+		}
+		runner.run();
+	}
+
+}
@@ -0,0 +1,110 @@
+package src.pas.chess.bench;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.heuristics.DefaultHeuristics;
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.heuristics.TaperedEvaluator;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.Position;
+
+
+/**
+ * One evaluation per operation, cycling through the children of the corpus positions: leaves the way minimax
+ * sees them (DefaultHeuristics needs the move that led to the node, so roots will not do). The DFSTreeNode
+ * benchmarks are what the minimax agents pay per leaf, the Position ones what the search pays (it evaluates on a
+ * fresh AttackMap per leaf too).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HeuristicsBenchmark
+    extends Object
+{
+
+	private DFSTreeNode[] nodes;
+	private Position[] positions;
+	private int[] maxColors;
+	private Evaluator taperedEvaluator;
+	private int positionIdx;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		List<DFSTreeNode> leaves = new ArrayList<DFSTreeNode>();
+		for(String fen : BenchPositions.loadFens())
+		{
+			Game game = BenchPositions.toGame(fen);
+			leaves.addAll(new DFSTreeNode(game, game.getCurrentPlayer()).getChildren());
+		}
+		this.nodes = leaves.toArray(new DFSTreeNode[leaves.size()]);
+		this.positions = new Position[this.nodes.length];
+		this.maxColors = new int[this.nodes.length];
+		for(int nodeIdx = 0; nodeIdx < this.nodes.length; ++nodeIdx)
+		{
+			this.positions[nodeIdx] = GameConverter.toPosition(this.nodes[nodeIdx].getGame());
+			this.maxColors[nodeIdx] = GameConverter.getColor(this.nodes[nodeIdx].getMaxPlayer());
+		}
+		this.taperedEvaluator = TaperedEvaluator.load();
+		this.positionIdx = 0;
+	}
+
+	private int nextPositionIdx()
+	{
+		int positionIdx = this.positionIdx;
+		this.positionIdx = positionIdx + 1 == this.positions.length ? 0 : positionIdx + 1;
+		return positionIdx;
+	}
+
+	@Benchmark
+	public double customHeuristics()
+	{
+		return CustomHeuristics.getMaxPlayerHeuristicValue(this.nodes[this.nextPositionIdx()]);
+	}
+
+	@Benchmark
+	public double defaultHeuristics()
+	{
+		return DefaultHeuristics.getMaxPlayerHeuristicValue(this.nodes[this.nextPositionIdx()]);
+	}
+
+	@Benchmark
+	public double customHeuristicsOnPosition()
+	{
+		int positionIdx = this.nextPositionIdx();
+		return Evaluator.CUSTOM_HEURISTICS.getMaxPlayerHeuristicValue(this.positions[positionIdx], this.maxColors[positionIdx]);
+	}
+
+	@Benchmark
+	public double taperedEvaluatorOnPosition()
+	{
+		int positionIdx = this.nextPositionIdx();
+		return this.taperedEvaluator.getMaxPlayerHeuristicValue(this.positions[positionIdx], this.maxColors[positionIdx]);
+	}
+
+}
@@ -0,0 +1,108 @@
+package src.pas.chess.bench;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.moveorder.CustomMoveOrderer;
+import src.pas.chess.moveorder.DefaultMoveOrderer;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Ordering the moves of one position per operation, cycling through the corpus. The node benchmarks order the
+ * DFSTreeNode children the minimax agents see (generated once in setUp, ordering does not change them), the
+ * moves benchmark orders the int moves the search sees, on a fresh AttackMap as the search does per node.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveOrderBenchmark
+    extends Object
+{
+
+	private List<DFSTreeNode>[] children;
+	private Position[] positions;
+	private int[][] legalMoves;
+	private int[] moves;
+	private int[] scores;
+	private int positionIdx;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp()
+	{
+		List<String> fens = BenchPositions.loadFens();
+		this.children = new List[fens.size()];
+		this.positions = new Position[fens.size()];
+		this.legalMoves = new int[fens.size()][];
+		int[] moves = new int[Moves.MAX_MOVES];
+		for(int fenIdx = 0; fenIdx < fens.size(); ++fenIdx)
+		{
+			Game game = BenchPositions.toGame(fens.get(fenIdx));
+			this.children[fenIdx] = new DFSTreeNode(game, game.getCurrentPlayer()).getChildren();
+			this.positions[fenIdx] = GameConverter.toPosition(game);
+			int numMoves = MoveGenerator.generateLegalMoves(this.positions[fenIdx], moves);
+			this.legalMoves[fenIdx] = Arrays.copyOf(moves, numMoves);
+		}
+		this.moves = new int[Moves.MAX_MOVES];
+		this.scores = new int[Moves.MAX_MOVES];
+		this.positionIdx = 0;
+	}
+
+	private int nextPositionIdx()
+	{
+		int positionIdx = this.positionIdx;
+		this.positionIdx = positionIdx + 1 == this.positions.length ? 0 : positionIdx + 1;
+		return positionIdx;
+	}
+
+	@Benchmark
+	public List<DFSTreeNode> customMoveOrderer()
+	{
+		return CustomMoveOrderer.order(this.children[this.nextPositionIdx()]);
+	}
+
+	@Benchmark
+	public List<DFSTreeNode> defaultMoveOrderer()
+	{
+		return DefaultMoveOrderer.order(this.children[this.nextPositionIdx()]);
+	}
+
+	@Benchmark
+	public int[] customMoveOrdererOnMoves()
+	{
+		int positionIdx = this.nextPositionIdx();
+		int[] legalMoves = this.legalMoves[positionIdx];
+		System.arraycopy(legalMoves, 0, this.moves, 0, legalMoves.length);
+		CustomMoveOrderer.order(new AttackMap(this.positions[positionIdx]), this.moves, legalMoves.length, this.scores,
+			Moves.NO_MOVE);
+		return this.moves;
+	}
+
+}
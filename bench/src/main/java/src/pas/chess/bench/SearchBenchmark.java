@@ -0,0 +1,109 @@
+package src.pas.chess.bench;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.agents.AlphaBetaAgent;
+
+
+/**
+ * One fixed-depth AlphaBetaAgent.AlphaBetaSearcher.alphaBetaSearch from a corpus position per operation, cycling
+ * through the corpus. Every search starts from an empty transposition table, so that an operation does not get
+ * faster because the previous one already searched the same position.
+ * options holds AlphaBetaAgent key=value options, separated by commas (e.g. "quiescence=false,eval=tapered").
+ *
+ * AlphaBetaSearcher is private to the agent, so it is reached by reflection, the way
+ * src.pas.chess.debug.agents.MinimaxReflectionAgent does. Looking it up happens once in setUp, and calling
+ * through the Method costs next to nothing next to a search.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark
+    extends Object
+{
+
+	@Param({"4"})
+	public int depth;
+
+	@Param({"quiescence=true", "quiescence=false"})
+	public String options;
+
+	private AlphaBetaAgent agent;
+	private Constructor<?> alphaBetaSearcherConstructor;
+	private Method alphaBetaSearchMethod;
+	private DFSTreeNode[] rootNodes;
+	private int positionIdx;
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException
+	{
+		String[] options = this.options.isEmpty() ? new String[0] : this.options.split(",");
+		String[] args = new String[4 + options.length];
+		args[0] = AlphaBetaAgent.class.getSimpleName();
+		args[1] = "WHITE";                          // the agent's own color is not used by alphaBetaSearch
+		args[2] = "1000";                           // nor is its clock
+		args[3] = String.valueOf(this.depth);
+		System.arraycopy(options, 0, args, 4, options.length);
+		this.agent = new AlphaBetaAgent(0, args);
+
+		Class<?> alphaBetaSearcherClass = Class.forName(AlphaBetaAgent.class.getName() + "$AlphaBetaSearcher");
+		this.alphaBetaSearcherConstructor = alphaBetaSearcherClass.getDeclaredConstructor(AlphaBetaAgent.class,
+			DFSTreeNode.class, int.class);
+		this.alphaBetaSearcherConstructor.setAccessible(true);
+		this.alphaBetaSearchMethod = alphaBetaSearcherClass.getDeclaredMethod("alphaBetaSearch", DFSTreeNode.class,
+			int.class, double.class, double.class);
+		this.alphaBetaSearchMethod.setAccessible(true);
+
+		List<String> fens = BenchPositions.loadFens();
+		this.rootNodes = new DFSTreeNode[fens.size()];
+		for(int fenIdx = 0; fenIdx < fens.size(); ++fenIdx)
+		{
+			Game game = BenchPositions.toGame(fens.get(fenIdx));
+			this.rootNodes[fenIdx] = new DFSTreeNode(game, game.getCurrentPlayer());
+		}
+		this.positionIdx = 0;
+	}
+
+	@Setup(Level.Invocation)
+	public void clearTranspositionTable()
+	{
+		this.agent.getTranspositionTable().clear();
+	}
+
+	@Benchmark
+	public Object alphaBetaSearch() throws ReflectiveOperationException
+	{
+		DFSTreeNode rootNode = this.rootNodes[this.positionIdx];
+		this.positionIdx = this.positionIdx + 1 == this.rootNodes.length ? 0 : this.positionIdx + 1;
+		Object alphaBetaSearcher = this.alphaBetaSearcherConstructor.newInstance(this.agent, rootNode, this.depth);
+		return this.alphaBetaSearchMethod.invoke(alphaBetaSearcher, rootNode, this.depth,
+			Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+	}
+
+}
@@ -17,23 +17,41 @@ import edu.bu.chess.streaming.Streamer;
 import edu.bu.chess.utils.Pair;
 
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.nio.file.Paths;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 
 // JAVA PROJECT IMPORTS
-import src.pas.chess.heuristics.CustomHeuristics;
-import src.pas.chess.moveorder.CustomMoveOrderer;
+import src.pas.chess.heuristics.CachedEvaluator;
+import src.pas.chess.heuristics.EvaluationCache;
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.heuristics.TaperedEvaluator;
+import src.pas.chess.instrumentation.MoveDecisionEvent;
+import src.pas.chess.instrumentation.SearchIterationEvent;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.search.HelperSearcher;
+import src.pas.chess.search.PositionSearcher;
+import src.pas.chess.search.SearchMetrics;
+import src.pas.chess.search.SearchScheduler;
+import src.pas.chess.search.SearchStoppedException;
+import src.pas.chess.search.Searcher;
+import src.pas.chess.search.TranspositionTable;
+import src.pas.chess.search.YoungBrothersWaitSearcher;
 
 
 public class AlphaBetaAgent
@@ -48,81 +66,204 @@ public class AlphaBetaAgent
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
 
+		// does the actual work on a make/unmake Position, never building a DFSTreeNode below the root
+		private final Searcher searcher;
+
+		// written by the search thread, read by the agent thread when the time budget expires
+		private volatile Move bestMoveSoFar;
+		private volatile int completedDepth;
+
+		// nodes the main search spent on the last two completed iterations, for the effective branching factor
+		private volatile long lastIterationNumNodes;
+		private volatile long previousIterationNumNodes;
+
+		// how many times the last aspirationSearch had to widen its window and search the root again
+		private int numAspirationResearches;
+
 		public AlphaBetaSearcher(DFSTreeNode rootNode,
                                  int maxDepth)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
+			this.searcher = AlphaBetaAgent.this.createSearcher();
+			this.bestMoveSoFar = null;
+			this.completedDepth = 0;
+			this.lastIterationNumNodes = 0;
+			this.previousIterationNumNodes = 0;
+			this.numAspirationResearches = 0;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
+		public Searcher getSearcher() { return this.searcher; }
+		public boolean isStopRequested() { return this.getSearcher().isStopRequested(); }
+		public Move getBestMoveSoFar() { return this.bestMoveSoFar; }
+		public int getCompletedDepth() { return this.completedDepth; }
 
 		/**
-		 * TODO: implement me!
-		 * This method should perform alpha-beta search from the current node
+		 * How many times more nodes the last completed iteration took than the one before it
+		 * (NaN with fewer than two completed iterations)
+		 */
+		public double getEffectiveBranchingFactor()
+		{
+			return this.previousIterationNumNodes > 0
+				? (double)this.lastIterationNumNodes / this.previousIterationNumNodes
+				: Double.NaN;
+		}
+
+		/**
+		 * Ask a running search to unwind as soon as possible. The best move of the last completed
+		 * iteration stays available through getBestMoveSoFar()
+		 */
+		public void requestStop() { this.getSearcher().requestStop(); }
+
+		/**
+		 * Alpha-beta search from node, run by the searcher on a Position converted from node's game
 		 * @param node the node to perform the search on (i.e. the root of the subtree)
-		 * @param depth how far in the tree we are rn
+		 * @param depth how many plies are left to search below node (0: just evaluate node)
 		 * @param alpha
 		 * @param beta
-		 * @return
+		 * @return the child of node to move to, carrying the searched value (node itself, with its value set,
+		 *         when node is terminal or depth is 0)
+		 * @throws SearchStoppedException if requestStop() was called
+		 * @throws IllegalStateException if the move the searcher picked is not one of the game's legal moves
 		 */
 		public DFSTreeNode alphaBetaSearch(DFSTreeNode node,
                                            int depth,
                                            double alpha,
                                            double beta)
 		{
-			if (depth == 0 || node.isTerminal()) {
-				double heuristicValue = CustomHeuristics.getMaxPlayerHeuristicValue(node);
-				node.setMaxPlayerUtilityValue(heuristicValue);
-				return node;
+			if (this.isStopRequested()) {
+				throw new SearchStoppedException();
 			}
 
-			DFSTreeNode bestChild = null;
-			double bestValue;
+			// a terminal node already carries its utility (computed by DFSTreeNode), same as in minimax
+			if (node.isTerminal()) {
+				return node;
+			}
 
-			boolean isMaxPlayer = node.getGame().getCurrentPlayer().equals(node.getMaxPlayer());
+			// everything below this node is searched on a single Position with make/unmake,
+			// only the chosen child is turned back into a DFSTreeNode
+			Position position = GameConverter.toPosition(node.getGame());
+			int maxColor = GameConverter.getColor(node.getMaxPlayer());
+			if (depth == 0) {
+				node.setMaxPlayerUtilityValue(AlphaBetaAgent.this.getEvaluator().getMaxPlayerHeuristicValue(position, maxColor));
+				return node;
+			}
 
-			if (isMaxPlayer) {
-				bestValue = Double.NEGATIVE_INFINITY;
-				List<DFSTreeNode> children = CustomMoveOrderer.order(node.getChildren());
+			double value = this.getSearcher().search(position, maxColor, depth, alpha, beta);
+			Move move = GameConverter.decodeMove(node.getGame(), this.getSearcher().getBestMove());
+			if (move == null) {
+				// the Position and the library disagree on the legal moves (a converter or move generator bug)
+				throw new IllegalStateException("AlphaBetaAgent.alphaBetaSearch: best move "
+					+ Moves.toString(this.getSearcher().getBestMove()) + " is not a legal move of " + Fen.toFen(position));
+			}
 
-				for (DFSTreeNode child : children) {
-					DFSTreeNode result = alphaBetaSearch(child, depth - 1, alpha, beta);
+			DFSTreeNode bestChild = new DFSTreeNode(move, node.getGame().applyMove(move), node, node.getMaxPlayer());
+			bestChild.setMaxPlayerUtilityValue(value);
+			node.setMaxPlayerUtilityValue(value);
+			return bestChild;
+		}
 
-					if (result.getMaxPlayerUtilityValue() > bestValue) {
-						bestValue = result.getMaxPlayerUtilityValue();
-						bestChild = child;
-					}
+		/**
+		 * Search depth 1, 2, 3, ... from the root until either maxDepth is done or requestStop() is called.
+		 * Only moves from iterations that ran to completion are kept, a partially searched iteration is thrown away.
+		 * @return the best move of the deepest completed iteration (null if not even depth 1 finished)
+		 */
+		public Move iterativeDeepeningSearch()
+		{
+			double previousValue = Double.NaN;
+			for(int depth = 1; depth <= this.getMaxDepth(); ++depth)
+			{
+				DFSTreeNode bestChild = null;
+				long numNodesBefore = this.getSearcher().getNumNodes();
+				SearchIterationEvent iterationEvent = new SearchIterationEvent();
+				iterationEvent.begin();
+				try
+				{
+					bestChild = this.aspirationSearch(depth, previousValue);
+				} catch(SearchStoppedException e)
+				{
+					break;
+				}
 
-					alpha = Math.max(alpha, bestValue);
+				if(bestChild == this.getRootNode()) // terminal root, nothing to play
+				{
+					break;
+				}
 
-					if (alpha >= beta) {
-						break; 
-					}
+				this.bestMoveSoFar = bestChild.getMove();
+				this.completedDepth = depth;
+				this.previousIterationNumNodes = this.lastIterationNumNodes;
+				this.lastIterationNumNodes = this.getSearcher().getNumNodes() - numNodesBefore;
+				if(iterationEvent.shouldCommit())
+				{
+					iterationEvent.player = AlphaBetaAgent.this.getPlayerType().toString();
+					iterationEvent.depth = depth;
+					iterationEvent.score = this.getRootNode().getMaxPlayerUtilityValue();
+					iterationEvent.numNodes = this.lastIterationNumNodes;
+					iterationEvent.numResearches = this.numAspirationResearches;
+					iterationEvent.commit();
 				}
-			} else {
-				bestValue = Double.POSITIVE_INFINITY;
-				List<DFSTreeNode> children = CustomMoveOrderer.order(node.getChildren());
+				previousValue = this.getRootNode().getMaxPlayerUtilityValue();
 
-				for (DFSTreeNode child : children) {
-					DFSTreeNode result = alphaBetaSearch(child, depth - 1, alpha, beta);
+				// a forced mate will not get any better by looking deeper
+				if(Math.abs(this.getRootNode().getMaxPlayerUtilityValue()) == Double.MAX_VALUE)
+				{
+					break;
+				}
+			}
+			return this.getBestMoveSoFar();
+		}
 
-					if (result.getMaxPlayerUtilityValue() < bestValue) {
-						bestValue = result.getMaxPlayerUtilityValue();
-						bestChild = child;
-					}
+		/**
+		 * Search the root to depth with an aspiration window around guess (the value of the previous iteration),
+		 * since the value rarely moves much from one depth to the next and a narrow window cuts off far more.
+		 * When the value falls outside the window the failing side is moved twice as far out and the root is
+		 * searched again, until the value lands inside it: the result is always the same as with a full window.
+		 * @param guess NaN when there is no previous value, then the full window is used right away
+		 */
+		private DFSTreeNode aspirationSearch(int depth, double guess)
+		{
+			double alpha = Double.NEGATIVE_INFINITY;
+			double beta = Double.POSITIVE_INFINITY;
+			double delta = AlphaBetaAgent.this.getEvaluator().getAspirationWindow();
+			if(AlphaBetaAgent.this.usesAspirationWindows() && !Double.isNaN(guess) && Math.abs(guess) != Double.MAX_VALUE)
+			{
+				alpha = guess - delta;
+				beta = guess + delta;
+			}
 
-					beta = Math.min(beta, bestValue);
+			for(int numWidenings = 0; ; ++numWidenings)
+			{
+				this.numAspirationResearches = numWidenings;
+				DFSTreeNode bestChild = this.alphaBetaSearch(this.getRootNode(), depth, alpha, beta);
+				double value = this.getRootNode().getMaxPlayerUtilityValue();
+				if(value > alpha && value < beta)
+				{
+					return bestChild;
+				}
 
-					if (alpha >= beta) {
-						break; 
+				// open the window all the way once widening does not seem to get anywhere (or the value is a mate)
+				delta *= 2.0;
+				boolean isFullWindow = numWidenings + 1 >= AlphaBetaAgent.MAX_ASPIRATION_WIDENINGS
+					|| Math.abs(value) == Double.MAX_VALUE;
+				if(value <= alpha)
+				{
+					if(alpha == Double.NEGATIVE_INFINITY)
+					{
+						return bestChild;
+					}
+					alpha = isFullWindow ? Double.NEGATIVE_INFINITY : value - delta;
+				} else
+				{
+					if(beta == Double.POSITIVE_INFINITY)
+					{
+						return bestChild;
 					}
+					beta = isFullWindow ? Double.POSITIVE_INFINITY : value + delta;
 				}
 			}
-
-			node.setMaxPlayerUtilityValue(bestValue);
-			return bestChild != null ? bestChild : node;
 		}
 
 		@Override
@@ -131,8 +272,15 @@ public class AlphaBetaAgent
 			Move move = null;
 
 			double startTime = System.nanoTime();
-			move = this.alphaBetaSearch(this.getRootNode(), this.getMaxDepth(),
-					Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).getMove();
+			if(AlphaBetaAgent.this.usesIterativeDeepening())
+			{
+				move = this.iterativeDeepeningSearch();
+			} else
+			{
+				move = this.alphaBetaSearch(this.getRootNode(), this.getMaxDepth(),
+						Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY).getMove();
+				this.completedDepth = this.getMaxDepth();
+			}
 			double endTime = System.nanoTime();
 
 			return new Pair<Move, Long>(move, (long)((endTime-startTime)/1000000));
@@ -148,20 +296,112 @@ public class AlphaBetaAgent
 	 */
 	private static final int DEFAULTMAXDEPTH = 3;
 
+	/**
+	 * Time management for iterative deepening. Without an explicit movetime option each move gets an equal
+	 * share of the clock assuming this many moves are still to be played, minus a margin for the planner/SEPIA overhead
+	 */
+	private static final long EXPECTED_MOVES_REMAINING = 30;
+	private static final long TIME_SAFETY_MARGIN_IN_MS = 50;
+
+	/**
+	 * How long a search that was asked to stop (the main search once its budget is up, the Lazy SMP helpers once
+	 * the move is picked) gets to unwind before we stop waiting for it. Stops are only noticed every few
+	 * thousand nodes, so this is usually a millisecond or two; twice this fits in TIME_SAFETY_MARGIN_IN_MS
+	 */
+	private static final long STOP_GRACE_IN_MS = 20;
+
+	private static final int DEFAULT_HASH_SIZE_IN_MB = 16;
+
+	/**
+	 * Aspiration windows for iterative deepening: every iteration after the first starts with the window
+	 * previous value +/- the evaluator's getAspirationWindow() (how far its value typically moves from one depth
+	 * to the next). The side that fails is widened, doubling the distance each time, and fully opened after
+	 * MAX_ASPIRATION_WIDENINGS
+	 */
+	private static final int MAX_ASPIRATION_WIDENINGS = 4;
+
+	private static final String ALPHA_BETA_SEARCHER = "alphabeta";
+	private static final String YOUNG_BROTHERS_WAIT_SEARCHER = "ybw";
+
+	private static final String CUSTOM_EVALUATOR = "custom";
+	private static final String TAPERED_EVALUATOR = "tapered";
+
 	private final int maxDepth;
 	private final long maxPlaytimeInMS;
 	private final PlayerType playerType;
+	private final boolean iterativeDeepening;
+	private final boolean aspirationWindows;
+	private final long moveTimeInMS;
+	private final boolean quiescence;
+	private final int maxQuiescencePlies;
+	private final boolean nullMovePruning;
+	private final boolean lateMoveReductions;
+	private final int numThreads;
+	private final String searcherName;
+	private final String evaluatorName;
+	private final Evaluator evaluator;
+
+	// in front of the evaluator when evalcache=true (null otherwise), shared by all of this agent's searches
+	private final EvaluationCache evaluationCache;
+
+	// counted into by every searcher of this agent when metrics=true (null otherwise), for the whole game
+	private final SearchMetrics metrics;
+
+	// what the per-game summary adds up over the moves searched
+	private int numMovesSearched;
+	private long totalSearchTimeInMS;
+	private long totalCompletedDepth;
+	private double totalEffectiveBranchingFactor;
+	private int numEffectiveBranchingFactors;
+
+	// the threads the search (and any Lazy SMP helpers) run on, created on the first move and kept for the whole game
+	private SearchScheduler searchScheduler;
+
+	// the workers of the ybw searcher, created the first time it is used and kept for the whole game
+	private ForkJoinPool forkJoinPool;
+
+	// shared by every search this agent runs, so what we learned on the last move helps with the next one
+	private final TranspositionTable transpositionTable;
 
 	private Player myPlayer;
 
 	/**
-	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
+	 * The constructor. This constructor will work for variable-sized program args.
+	 * Besides the positional args, any arg of the form key=value (anywhere in the list) is a search option:
+	 *     iterativedeepening=true|false    search depth 1..maxDepth until the move's time budget runs out (default true)
+	 *     aspiration=true|false            start each iteration with a narrow window around the previous value (default true)
+	 *     movetime=<ms>                    fixed time budget per move (default: an equal share of the remaining clock)
+	 *     hashmb=<mb>                      size of the transposition table in megabytes (default 16)
+	 *     quiescence=true|false            resolve captures at depth 0 before evaluating (default true). Turn it off
+	 *                                      to get plain minimax values, e.g. when checking against MinimaxReflectionAgent
+	 *     qplies=<n>                       how many captures deep quiescence search may go (default 8)
+	 *     nullmove=true|false              null-move pruning (default: same as quiescence, so that quiescence=false
+	 *                                      alone still gives plain minimax values)
+	 *     lmr=true|false                   late move reductions for quiet moves ordered late (default: same as quiescence)
+	 *     threads=<n>                      search with n threads (Lazy SMP): n - 1 helpers search the same root and
+	 *                                      share the transposition table with the main search (default 1)
+	 *     searcher=alphabeta|ybw           alphabeta: single threaded search (plus Lazy SMP helpers if threads > 1),
+	 *                                      ybw: Young Brothers Wait parallel search on a ForkJoinPool of threads
+	 *                                      workers (default alphabeta)
+	 *     eval=custom|tapered              custom: CustomHeuristics, what minimax computes. tapered: TaperedEvaluator,
+	 *                                      midgame/endgame piece-square tables blended by game phase (default custom)
+	 *     evalfile=<path>                  the weights for eval=tapered (default TaperedEvaluator.DEFAULT_WEIGHTS_PATH)
+	 *     evalcache=true|false             cache evaluations by position hash (default false: cached scores are rounded
+	 *                                      in their last few digits, and the heuristics are cheap enough that the
+	 *                                      cache does not pay for itself yet)
+	 *     metrics=true|false               count nodes, evaluations, transposition table hits and cutoffs (see
+	 *                                      SearchMetrics), print them after every move and for the whole game
+	 *                                      when it ends (default false)
 	 * @param playerID
 	 * @param args
 	 */
 	public AlphaBetaAgent(int playerID, String[] args)
 	{
 		super(playerID);
+
+		Map<String, String> options = AlphaBetaAgent.parseOptions(args);
+		args = AlphaBetaAgent.stripOptions(args);
+
 		long maxPlaytimeInMS = 0;
 		int maxDepth = 10;
 		String playerTypeString = null;
@@ -199,10 +439,107 @@ public class AlphaBetaAgent
 		this.playerType = PlayerType.valueOf(playerTypeString);
 		this.maxDepth = maxDepth;
 		this.maxPlaytimeInMS = maxPlaytimeInMS;
+		this.iterativeDeepening = Boolean.parseBoolean(options.getOrDefault("iterativedeepening", "true"));
+		this.aspirationWindows = Boolean.parseBoolean(options.getOrDefault("aspiration", "true"));
+		this.moveTimeInMS = Long.parseLong(options.getOrDefault("movetime", "0"));
+		this.quiescence = Boolean.parseBoolean(options.getOrDefault("quiescence", "true"));
+		this.maxQuiescencePlies = Integer.parseInt(options.getOrDefault("qplies",
+			String.valueOf(PositionSearcher.DEFAULT_MAX_QUIESCENCE_PLIES)));
+		this.nullMovePruning = Boolean.parseBoolean(options.getOrDefault("nullmove", String.valueOf(this.quiescence)));
+		this.lateMoveReductions = Boolean.parseBoolean(options.getOrDefault("lmr", String.valueOf(this.quiescence)));
+		this.transpositionTable = new TranspositionTable(Integer.parseInt(options.getOrDefault("hashmb",
+			String.valueOf(AlphaBetaAgent.DEFAULT_HASH_SIZE_IN_MB))));
+		this.numThreads = Math.max(1, Integer.parseInt(options.getOrDefault("threads", "1")));
+		this.searcherName = options.getOrDefault("searcher", AlphaBetaAgent.ALPHA_BETA_SEARCHER).toLowerCase();
+		if(!this.searcherName.equals(AlphaBetaAgent.ALPHA_BETA_SEARCHER)
+			&& !this.searcherName.equals(AlphaBetaAgent.YOUNG_BROTHERS_WAIT_SEARCHER))
+		{
+			System.err.println("AlphaBetaAgent.AlphaBetaAgent [ERROR]: unknown searcher=" + this.searcherName
+				+ ", expected " + AlphaBetaAgent.ALPHA_BETA_SEARCHER + " or " + AlphaBetaAgent.YOUNG_BROTHERS_WAIT_SEARCHER);
+			System.exit(-1);
+		}
+		this.evaluatorName = options.getOrDefault("eval", AlphaBetaAgent.CUSTOM_EVALUATOR).toLowerCase();
+		Evaluator evaluator = AlphaBetaAgent.createEvaluator(this.evaluatorName,
+			options.getOrDefault("evalfile", TaperedEvaluator.DEFAULT_WEIGHTS_PATH));
+		this.evaluationCache = Boolean.parseBoolean(options.getOrDefault("evalcache", "false"))
+			? new EvaluationCache()
+			: null;
+		this.evaluator = this.evaluationCache != null ? new CachedEvaluator(evaluator, this.evaluationCache) : evaluator;
+		this.metrics = Boolean.parseBoolean(options.getOrDefault("metrics", "false"))
+			? new SearchMetrics(this.evaluationCache)
+			: null;
+		this.numMovesSearched = 0;
+		this.totalSearchTimeInMS = 0;
+		this.totalCompletedDepth = 0;
+		this.totalEffectiveBranchingFactor = 0.0;
+		this.numEffectiveBranchingFactors = 0;
+		this.searchScheduler = null;
+		this.forkJoinPool = null;
 		this.myPlayer = null;
 		this.setFilePath(filePath);
 
-		System.out.println("Constructed AlphaBetaAgent(teamColor=" + this.getPlayerType() + ", timeLimit(ms)=" + this.getMaxPlaytimeInMS() + ", maxDepth=" + this.getMaxDepth() + ")");
+		System.out.println("Constructed AlphaBetaAgent(teamColor=" + this.getPlayerType() + ", timeLimit(ms)=" + this.getMaxPlaytimeInMS() + ", maxDepth=" + this.getMaxDepth()
+			+ ", iterativeDeepening=" + this.usesIterativeDeepening() + ", aspiration=" + this.usesAspirationWindows() + ", quiescence=" + this.usesQuiescence() + ", nullMove=" + this.usesNullMovePruning() + ", lmr=" + this.usesLateMoveReductions() + ", threads=" + this.getNumThreads() + ", searcher=" + this.getSearcherName() + ", eval=" + this.getEvaluatorName() + ", evalCache=" + this.usesEvaluationCache() + ", metrics=" + this.usesMetrics() + ")");
+	}
+
+	/**
+	 * The evaluator the eval= option names, exits on an unknown name or a weights file that cannot be loaded
+	 */
+	private static Evaluator createEvaluator(String evaluatorName, String weightsPath)
+	{
+		if(evaluatorName.equals(AlphaBetaAgent.CUSTOM_EVALUATOR))
+		{
+			return Evaluator.CUSTOM_HEURISTICS;
+		}
+		if(!evaluatorName.equals(AlphaBetaAgent.TAPERED_EVALUATOR))
+		{
+			System.err.println("AlphaBetaAgent.AlphaBetaAgent [ERROR]: unknown eval=" + evaluatorName
+				+ ", expected " + AlphaBetaAgent.CUSTOM_EVALUATOR + " or " + AlphaBetaAgent.TAPERED_EVALUATOR);
+			System.exit(-1);
+		}
+		try
+		{
+			return TaperedEvaluator.load(Paths.get(weightsPath));
+		} catch(IOException e)
+		{
+			System.err.println("AlphaBetaAgent.AlphaBetaAgent [ERROR]: could not load evalfile=" + weightsPath
+				+ ": " + e.getMessage());
+			System.exit(-1);
+			return null;
+		}
+	}
+
+	/**
+	 * Collect the key=value args (keys are case-insensitive)
+	 */
+	private static Map<String, String> parseOptions(String[] args)
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		for(String arg : args)
+		{
+			int separatorIdx = arg.indexOf('=');
+			if(separatorIdx > 0)
+			{
+				options.put(arg.substring(0, separatorIdx).trim().toLowerCase(), arg.substring(separatorIdx + 1).trim());
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Everything that is not a key=value option, in the original order
+	 */
+	private static String[] stripOptions(String[] args)
+	{
+		List<String> positionalArgs = new ArrayList<String>(args.length);
+		for(String arg : args)
+		{
+			if(arg.indexOf('=') <= 0)
+			{
+				positionalArgs.add(arg);
+			}
+		}
+		return positionalArgs.toArray(new String[positionalArgs.size()]);
 	}
 
 	/**
@@ -210,6 +547,61 @@ public class AlphaBetaAgent
 	 */
 	public int getMaxDepth() { return this.maxDepth; }
 	public long getMaxPlaytimeInMS() { return this.maxPlaytimeInMS; }
+	public boolean usesIterativeDeepening() { return this.iterativeDeepening; }
+	public boolean usesAspirationWindows() { return this.aspirationWindows; }
+	public long getMoveTimeInMS() { return this.moveTimeInMS; }
+	public boolean usesQuiescence() { return this.quiescence; }
+	public int getMaxQuiescencePlies() { return this.maxQuiescencePlies; }
+	public boolean usesNullMovePruning() { return this.nullMovePruning; }
+	public boolean usesLateMoveReductions() { return this.lateMoveReductions; }
+	public int getNumThreads() { return this.numThreads; }
+	public String getSearcherName() { return this.searcherName; }
+	public String getEvaluatorName() { return this.evaluatorName; }
+	public Evaluator getEvaluator() { return this.evaluator; }
+	public EvaluationCache getEvaluationCache() { return this.evaluationCache; }
+	public boolean usesEvaluationCache() { return this.getEvaluationCache() != null; }
+	public SearchMetrics getMetrics() { return this.metrics; }
+	public boolean usesMetrics() { return this.getMetrics() != null; }
+	public boolean usesYoungBrothersWait() { return this.getSearcherName().equals(AlphaBetaAgent.YOUNG_BROTHERS_WAIT_SEARCHER); }
+
+	/**
+	 * One thread for the main search plus one per Lazy SMP helper (the ybw searcher brings its own workers)
+	 */
+	private SearchScheduler getSearchScheduler()
+	{
+		if(this.searchScheduler == null)
+		{
+			this.searchScheduler = new SearchScheduler(this.getClass().getSimpleName(),
+				this.usesYoungBrothersWait() ? 1 : this.getNumThreads());
+		}
+		return this.searchScheduler;
+	}
+
+	private ForkJoinPool getForkJoinPool()
+	{
+		if(this.forkJoinPool == null)
+		{
+			this.forkJoinPool = new ForkJoinPool(this.getNumThreads());
+		}
+		return this.forkJoinPool;
+	}
+
+	/**
+	 * A fresh searcher of the kind the searcher= option asks for, sharing this agent's transposition table
+	 */
+	private Searcher createSearcher()
+	{
+		Searcher searcher = this.usesYoungBrothersWait()
+			? new YoungBrothersWaitSearcher(this.getTranspositionTable(), this.getForkJoinPool())
+			: new PositionSearcher(this.getTranspositionTable());
+		searcher.setEvaluator(this.getEvaluator());
+		searcher.setMaxQuiescencePlies(this.usesQuiescence() ? this.getMaxQuiescencePlies() : 0);
+		searcher.setNullMovePruning(this.usesNullMovePruning());
+		searcher.setLateMoveReductions(this.usesLateMoveReductions());
+		searcher.setMetrics(this.getMetrics());
+		return searcher;
+	}
+	public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
 
 	@Override
 	public PlayerType getPlayerType() { return this.playerType; }
@@ -217,42 +609,90 @@ public class AlphaBetaAgent
 	@Override
 	protected Player getPlayer() { return this.myPlayer; }
 
+	/**
+	 * How long we are willing to think about the current move. Never more than what is left on the clock.
+	 */
+	private long getMoveTimeBudgetInMS()
+	{
+		long timeLeftInMS = Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer());
+		long budgetInMS = this.getMoveTimeInMS() > 0
+			? this.getMoveTimeInMS()
+			: timeLeftInMS / AlphaBetaAgent.EXPECTED_MOVES_REMAINING;
+		return Math.max(1, Math.min(budgetInMS, timeLeftInMS - AlphaBetaAgent.TIME_SAFETY_MARGIN_IN_MS));
+	}
+
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
 	 * There is some setup for this to work, namely making sure the agent doesn't run out of time.
-	 * Please do not modify.
+	 *
+	 * With iterative deepening the search is given a per-move time budget. When the budget expires we stop the
+	 * search and play the best move of the deepest completed iteration instead of forfeiting the game.
+	 *
+	 * With more than one thread, Lazy SMP helpers search the same root next to the main search until it is done.
+	 * Only the main search picks the move, the helpers speed it up through the shared transposition table.
+	 * They are stopped and waited for (up to STOP_GRACE_IN_MS) before the move is returned, so none of them is
+	 * still writing into the table when the next move's search starts.
 	 */
 	@Override
 	protected Move getChessMove(StateView state)
 	{
-		// will run the alpha-beta algorithm in a background thread with a timeout
-		ExecutorService backgroundThreadManager = Executors.newSingleThreadExecutor();
+		// will run the alpha-beta algorithm (and any helpers) in background threads with a timeout
+		SearchScheduler searchScheduler = this.getSearchScheduler();
 
 		// preallocate so we don't spend precious time doing it when we are recording duration
 		Move move = null;
 		long durationInMs = 0;
 		DFSTreeNode rootNode = new DFSTreeNode(Planner.getPlanner().getGame(), this.getPlayer());
 		AlphaBetaSearcher searcherObject = new AlphaBetaSearcher(rootNode, this.getMaxDepth()); // this obj will run in the background
+		this.getTranspositionTable().newSearch();
+		long timeoutInMS = this.usesIterativeDeepening()
+			? this.getMoveTimeBudgetInMS()
+			: Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer());
 
 		// submit the job
-		Future<Pair<Move, Long> > future = backgroundThreadManager.submit(searcherObject);
+		MoveDecisionEvent decisionEvent = new MoveDecisionEvent();
+		decisionEvent.begin();
+		boolean timedOut = false;
+		SearchMetrics.Snapshot metricsBefore = this.usesMetrics() ? this.getMetrics().snapshot() : null;
+		long startTime = System.nanoTime();
+		Future<Pair<Move, Long> > future = searchScheduler.submit(searcherObject);
+		List<Pair<HelperSearcher, Future<?> > > helpers = this.startHelpers(searchScheduler, rootNode);
 
 		try
 		{
 			// set the timeout
-			Pair<Move, Long> moveAndDuration = future.get(Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer()),
-					TimeUnit.MILLISECONDS);
+			Pair<Move, Long> moveAndDuration = future.get(timeoutInMS, TimeUnit.MILLISECONDS);
 
 			// if we get here the move was chosen quick enough! :)
 			move = moveAndDuration.getFirst();
 			durationInMs = moveAndDuration.getSecond();
-
-			// convert the move into a text form (algebraic notation) and stream it somewhere
-			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
-			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
-			durationInMs = this.getMaxPlaytimeInMS();
+			timedOut = true;
+			if(this.usesIterativeDeepening())
+			{
+				// out of budget for this move: stop the search and take the best move of the last finished iteration
+				// (without waiting past the grace period for a search that is slow to notice the stop)
+				searcherObject.requestStop();
+				AlphaBetaAgent.stopHelpers(helpers);
+				AlphaBetaAgent.awaitStopped(future, System.nanoTime() + AlphaBetaAgent.STOP_GRACE_IN_MS * 1000000);
+				move = searcherObject.getBestMoveSoFar();
+				if(move == null)
+				{
+					// not even depth 1 finished, anything legal beats losing on time
+					List<Move> legalMoves = rootNode.getGame().getAllMoves(this.getPlayer());
+					move = legalMoves.isEmpty() ? null : legalMoves.get(0);
+				}
+				durationInMs = (System.nanoTime() - startTime) / 1000000;
+			} else
+			{
+				// the result is of no use any more, make sure the search does not keep running in the background
+				searcherObject.requestStop();
+				SearchScheduler.cancel(future);
+
+				// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
+				durationInMs = this.getMaxPlaytimeInMS();
+			}
 		} catch(InterruptedException e)
 		{
 			e.printStackTrace();
@@ -261,6 +701,38 @@ public class AlphaBetaAgent
 		{
 			e.printStackTrace();
 			System.exit(-1);
+		} finally
+		{
+			// the helpers must be done before the next move's search reuses the threads and the transposition table
+			AlphaBetaAgent.stopHelpers(helpers);
+			long deadline = System.nanoTime() + AlphaBetaAgent.STOP_GRACE_IN_MS * 1000000;
+			for(Pair<HelperSearcher, Future<?> > helper : helpers)
+			{
+				AlphaBetaAgent.awaitStopped(helper.getSecond(), deadline);
+			}
+		}
+
+		if(decisionEvent.shouldCommit())
+		{
+			decisionEvent.agent = this.getClass().getSimpleName();
+			decisionEvent.player = this.getPlayerType().toString();
+			decisionEvent.move = String.valueOf(move);
+			decisionEvent.timeBudget = timeoutInMS;
+			decisionEvent.timeUsed = durationInMs;
+			decisionEvent.timedOut = timedOut;
+			decisionEvent.depth = searcherObject.getCompletedDepth();
+			decisionEvent.commit();
+		}
+
+		if(metricsBefore != null)
+		{
+			this.reportMoveMetrics(searcherObject, metricsBefore, (System.nanoTime() - startTime) / 1000000);
+		}
+
+		if(move != null)
+		{
+			// convert the move into a text form (algebraic notation) and stream it somewhere
+			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		}
 
 		// update the game singleton to record that our player took some time to think
@@ -269,6 +741,99 @@ public class AlphaBetaAgent
 		return move;
 	}
 
+	/**
+	 * Print what the search of the move just played counted, and add it to the game totals terminalStep prints
+	 * @param metricsBefore the snapshot taken before the search started
+	 * @param elapsedInMS wall clock time of the search (including the wait for it to stop)
+	 */
+	private void reportMoveMetrics(AlphaBetaSearcher searcherObject, SearchMetrics.Snapshot metricsBefore, long elapsedInMS)
+	{
+		SearchMetrics.Snapshot moveMetrics = this.getMetrics().snapshot().minus(metricsBefore);
+		double effectiveBranchingFactor = searcherObject.getEffectiveBranchingFactor();
+
+		this.numMovesSearched += 1;
+		this.totalSearchTimeInMS += elapsedInMS;
+		this.totalCompletedDepth += searcherObject.getCompletedDepth();
+		if(!Double.isNaN(effectiveBranchingFactor))
+		{
+			this.totalEffectiveBranchingFactor += effectiveBranchingFactor;
+			this.numEffectiveBranchingFactors += 1;
+		}
+
+		System.out.println("AlphaBetaAgent.getChessMove [INFO]: move=" + this.numMovesSearched
+			+ " depth=" + searcherObject.getCompletedDepth()
+			+ " time=" + elapsedInMS + "ms"
+			+ " nps=" + AlphaBetaAgent.getNodesPerSecond(moveMetrics.getNumNodes(), elapsedInMS)
+			+ " ebf=" + (Double.isNaN(effectiveBranchingFactor) ? "-" : String.format("%.2f", effectiveBranchingFactor))
+			+ " " + moveMetrics);
+	}
+
+	private static long getNodesPerSecond(long numNodes, long elapsedInMS)
+	{
+		return numNodes * 1000 / Math.max(1, elapsedInMS);
+	}
+
+	/**
+	 * Wait (until deadline, in System.nanoTime() terms) for a search that was asked to stop. One that is still
+	 * running by then is interrupted and left to unwind on its own
+	 * @return true if the search was done in time
+	 */
+	private static boolean awaitStopped(Future<?> future, long deadline)
+	{
+		try
+		{
+			future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			return true;
+		} catch(TimeoutException e)
+		{
+			System.err.println("AlphaBetaAgent.awaitStopped [WARNING]: search did not stop within "
+				+ AlphaBetaAgent.STOP_GRACE_IN_MS + "ms, cancelling it");
+			SearchScheduler.cancel(future);
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e)
+		{
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	private static void stopHelpers(List<Pair<HelperSearcher, Future<?> > > helpers)
+	{
+		for(Pair<HelperSearcher, Future<?> > helper : helpers)
+		{
+			helper.getFirst().requestStop();
+		}
+	}
+
+	/**
+	 * Submit getNumThreads() - 1 Lazy SMP helpers for the search from rootNode (none for the ybw searcher,
+	 * which uses the threads itself)
+	 * @return each helper with the future of its run
+	 */
+	private List<Pair<HelperSearcher, Future<?> > > startHelpers(SearchScheduler searchScheduler, DFSTreeNode rootNode)
+	{
+		List<Pair<HelperSearcher, Future<?> > > helpers = new ArrayList<Pair<HelperSearcher, Future<?> > >(this.getNumThreads() - 1);
+		if(this.getNumThreads() > 1 && !this.usesYoungBrothersWait() && !rootNode.isTerminal())
+		{
+			Position position = GameConverter.toPosition(rootNode.getGame());
+			int maxColor = GameConverter.getColor(this.getPlayer());
+			for(int helperIdx = 0; helperIdx < this.getNumThreads() - 1; ++helperIdx)
+			{
+				HelperSearcher helper = new HelperSearcher(this.getTranspositionTable(), position, maxColor,
+					this.getMaxDepth(), helperIdx);
+				helper.getPositionSearcher().setEvaluator(this.getEvaluator());
+				helper.getPositionSearcher().setMaxQuiescencePlies(this.usesQuiescence() ? this.getMaxQuiescencePlies() : 0);
+				helper.getPositionSearcher().setNullMovePruning(this.usesNullMovePruning());
+				helper.getPositionSearcher().setLateMoveReductions(this.usesLateMoveReductions());
+				helper.getPositionSearcher().setMetrics(this.getMetrics());
+				helpers.add(new Pair<HelperSearcher, Future<?> >(helper, searchScheduler.submit(helper)));
+			}
+		}
+		return helpers;
+	}
+
 	/**
 	 * The initial step which we use for setup. Please do not modify.
 	 */
@@ -350,7 +915,30 @@ public class AlphaBetaAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+		// the game is over, release the search threads
+		if(this.searchScheduler != null)
+		{
+			this.searchScheduler.shutdown();
+			this.searchScheduler = null;
+		}
+		if(this.forkJoinPool != null)
+		{
+			this.forkJoinPool.shutdownNow();
+			this.forkJoinPool = null;
+		}
+
+		if(this.usesMetrics())
+		{
+			SearchMetrics.Snapshot gameMetrics = this.getMetrics().snapshot();
+			System.out.println("AlphaBetaAgent.terminalStep [INFO]: game: moves=" + this.numMovesSearched
+				+ " mean_depth=" + String.format("%.2f", this.numMovesSearched > 0
+					? (double)this.totalCompletedDepth / this.numMovesSearched : 0.0)
+				+ " time=" + this.totalSearchTimeInMS + "ms"
+				+ " nps=" + AlphaBetaAgent.getNodesPerSecond(gameMetrics.getNumNodes(), this.totalSearchTimeInMS)
+				+ " mean_ebf=" + (this.numEffectiveBranchingFactors > 0
+					? String.format("%.2f", this.totalEffectiveBranchingFactor / this.numEffectiveBranchingFactors) : "-")
+				+ " " + gameMetrics);
+		}
 	}
 
 }
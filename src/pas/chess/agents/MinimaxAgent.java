@@ -24,8 +24,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -33,6 +31,9 @@ import java.util.concurrent.TimeoutException;
 
 // JAVA PROJECT IMPORTS
 import src.pas.chess.heuristics.CustomHeuristics;
+import src.pas.chess.instrumentation.MoveDecisionEvent;
+import src.pas.chess.search.SearchScheduler;
+import src.pas.chess.search.SearchStoppedException;
 
 
 public class MinimaxAgent
@@ -58,6 +59,12 @@ public class MinimaxAgent
 
 		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
 		{
+			// cancelled by the agent after a timeout: unwind instead of finishing a search nobody waits for
+			if(Thread.currentThread().isInterrupted())
+			{
+				throw new SearchStoppedException();
+			}
+
 			DFSTreeNode bestChild = null;
 			if(node.isTerminal()) // terminal state!
 			{
@@ -123,6 +130,9 @@ public class MinimaxAgent
 
 	private Player myPlayer;
 
+	// the thread searches run on, created on the first move and kept for the whole game
+	private SearchScheduler searchScheduler;
+
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
 	 * @param playerID
@@ -178,6 +188,15 @@ public class MinimaxAgent
 	@Override
 	protected Player getPlayer() { return this.myPlayer; }
 
+	private SearchScheduler getSearchScheduler()
+	{
+		if(this.searchScheduler == null)
+		{
+			this.searchScheduler = new SearchScheduler(this.getClass().getSimpleName(), 1);
+		}
+		return this.searchScheduler;
+	}
+
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
 	 * There is some setup for this to work, namely making sure the agent doesn't run out of time.
@@ -189,7 +208,7 @@ public class MinimaxAgent
         Planner.getPlanner().freeze(this.getPlayer());
 
 		// will run the minimax algorithm in a background thread with a timeout
-		ExecutorService backgroundThreadManager = Executors.newSingleThreadExecutor();
+		SearchScheduler searchScheduler = this.getSearchScheduler();
 
 		// preallocate so we don't spend precious time doing it when we are recording duration
 		Move move = null;
@@ -198,13 +217,16 @@ public class MinimaxAgent
 		MinimaxSearcher searcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth()); // this obj will run in the background
 
 		// submit the job
-		Future<Pair<Move, Long> > future = backgroundThreadManager.submit(searcherObject);
+		MoveDecisionEvent decisionEvent = new MoveDecisionEvent();
+		decisionEvent.begin();
+		long timeoutInMS = Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer());
+		boolean timedOut = false;
+		Future<Pair<Move, Long> > future = searchScheduler.submit(searcherObject);
 
 		try
 		{
 			// set the timeout
-			Pair<Move, Long> moveAndDuration = future.get(Planner.getPlanner().getGame().getTimeLeftInMS(this.getPlayer()),
-					TimeUnit.MILLISECONDS);
+			Pair<Move, Long> moveAndDuration = future.get(timeoutInMS, TimeUnit.MILLISECONDS);
 
 			// if we get here the move was chosen quick enough! :)
 			move = moveAndDuration.getFirst();
@@ -214,6 +236,11 @@ public class MinimaxAgent
 			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
+			timedOut = true;
+
+			// the result is of no use any more, do not let the search keep running in the background
+			SearchScheduler.cancel(future);
+
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
 			durationInMs = this.getMaxPlaytimeInMS();
 		} catch(InterruptedException e)
@@ -226,6 +253,18 @@ public class MinimaxAgent
 			System.exit(-1);
 		}
 
+		if(decisionEvent.shouldCommit())
+		{
+			decisionEvent.agent = this.getClass().getSimpleName();
+			decisionEvent.player = this.getPlayerType().toString();
+			decisionEvent.move = String.valueOf(move);
+			decisionEvent.timeBudget = timeoutInMS;
+			decisionEvent.timeUsed = durationInMs;
+			decisionEvent.timedOut = timedOut;
+			decisionEvent.depth = timedOut ? 0 : this.getMaxDepth();
+			decisionEvent.commit();
+		}
+
 		// update the game singleton to record that our player took some time to think
 		Planner.getPlanner().getGame().removeTimeFromPlayer(this.getPlayer(), durationInMs); // convert duration to ms
 
@@ -317,8 +356,12 @@ public class MinimaxAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
-
+		// the game is over, release the search thread
+		if(this.searchScheduler != null)
+		{
+			this.searchScheduler.shutdown();
+			this.searchScheduler = null;
+		}
 	}
 
 }
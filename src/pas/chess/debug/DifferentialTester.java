@@ -0,0 +1,582 @@
+package src.pas.chess.debug;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+import edu.bu.chess.search.DFSTreeNodeType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+import src.pas.chess.search.PositionSearcher;
+import src.pas.chess.search.SearchScheduler;
+
+
+/**
+ * A headless, batch version of debug.agents.MinimaxReflectionAgent: instead of comparing alpha-beta against
+ * minimax one move at a time in a SEPIA game, search every position of a FEN file with both and report each
+ * position whose root values differ. The positions are spread over worker threads, so a corpus of thousands
+ * checks a new pruning or reduction feature in minutes:
+ *     java -cp "lib/*:." src.pas.chess.debug.DifferentialTester run [<path>] [<depth>] [key=value ...]
+ *     java -cp "lib/*:." src.pas.chess.debug.DifferentialTester generate <path> <count> [<seed>]
+ * run searches every position of a FEN file (DEFAULT_CORPUS_PATH by default, one FEN per line, blank lines and
+ * lines starting with # skipped) to depth (default DEFAULT_DEPTH) and exits with 1 if any value differs.
+ * Its key=value args are:
+ *     workers=<n>                  positions searched at the same time (default: one per core)
+ *     reference=position|tree      what alpha-beta is checked against. position: plain minimax on a Position
+ *                                  (fast, but uses the same move generator as the search). tree: the minimax
+ *                                  of MinimaxReflectionAgent over DFSTreeNodes, i.e. the library's own rules
+ *                                  (slow, keep the depth and the corpus small). Default position
+ *     anything else                an AlphaBetaAgent option (see its constructor), e.g. nullmove=true.
+ *                                  quiescence defaults to false here, so that alpha-beta should give minimax values
+ * The alpha-beta side is AlphaBetaAgent's own searcher (reached through reflection like MinimaxReflectionAgent
+ * does), so iterative deepening, aspiration windows and the transposition table are all checked along with it.
+ * Both sides score leaves with the agent's evaluator.
+ *
+ * generate writes count distinct positions reached by MIN_RANDOM_PLIES to MAX_RANDOM_PLIES random legal moves
+ * from the start position (none of them already over), e.g. to grow the corpus.
+ */
+public class DifferentialTester
+    extends Object
+{
+
+	public static final String DEFAULT_CORPUS_PATH = "data/pas/chess/debug/differential.fen";
+	public static final int DEFAULT_DEPTH = 3;
+
+	// same tolerance as MinimaxReflectionAgent
+	public static final double TOLERANCE = 1e-12;
+
+	public static final int MIN_RANDOM_PLIES = 4;
+	public static final int MAX_RANDOM_PLIES = 60;
+
+	private static final String POSITION_REFERENCE = "position";
+	private static final String TREE_REFERENCE = "tree";
+
+	/**
+	 * One position of the corpus, with the line it came from
+	 */
+	public static class Entry
+	    extends Object
+	{
+		private final int lineNumber;
+		private final String fen;
+
+		public Entry(int lineNumber, String fen)
+		{
+			this.lineNumber = lineNumber;
+			this.fen = fen;
+		}
+
+		public int getLineNumber() { return this.lineNumber; }
+		public String getFen() { return this.fen; }
+	}
+
+	/**
+	 * What both searches of one position gave
+	 */
+	public static class Result
+	    extends Object
+	{
+		private final Entry entry;
+		private final double minimaxValue;
+		private final double alphaBetaValue;
+		private final long minimaxNanos;
+		private final long alphaBetaNanos;
+
+		public Result(Entry entry, double minimaxValue, double alphaBetaValue, long minimaxNanos, long alphaBetaNanos)
+		{
+			this.entry = entry;
+			this.minimaxValue = minimaxValue;
+			this.alphaBetaValue = alphaBetaValue;
+			this.minimaxNanos = minimaxNanos;
+			this.alphaBetaNanos = alphaBetaNanos;
+		}
+
+		public Entry getEntry() { return this.entry; }
+		public double getMinimaxValue() { return this.minimaxValue; }
+		public double getAlphaBetaValue() { return this.alphaBetaValue; }
+		public long getMinimaxNanos() { return this.minimaxNanos; }
+		public long getAlphaBetaNanos() { return this.alphaBetaNanos; }
+
+		public boolean isMismatch()
+		{
+			// equal infinities (mates) subtract to NaN, so compare them first
+			return this.getMinimaxValue() != this.getAlphaBetaValue()
+				&& !(Math.abs(this.getMinimaxValue() - this.getAlphaBetaValue()) <= DifferentialTester.TOLERANCE);
+		}
+	}
+
+	/**
+	 * Plain minimax on a Position with make/unmake: every legal move, no pruning, no table, with the same
+	 * terminal rules and leaf values as PositionSearcher (see its class comment). One per worker thread
+	 */
+	private static class PositionMinimax
+	    extends Object
+	{
+		private final Evaluator evaluator;
+		private int[][] moveLists;
+		private AttackMap[] attackMaps;
+		private Position position;
+		private int maxColor;
+
+		public PositionMinimax(Evaluator evaluator)
+		{
+			this.evaluator = evaluator;
+			this.moveLists = new int[0][];
+			this.attackMaps = new AttackMap[0];
+			this.position = null;
+			this.maxColor = Position.WHITE;
+		}
+
+		public double search(Position position, int maxColor, int depth)
+		{
+			if(this.moveLists.length < depth + 1)
+			{
+				this.moveLists = new int[depth + 1][Moves.MAX_MOVES];
+				this.attackMaps = new AttackMap[depth + 1];
+				for(int ply = 0; ply <= depth; ++ply)
+				{
+					this.attackMaps[ply] = new AttackMap();
+				}
+			}
+			this.position = position;
+			this.maxColor = maxColor;
+			return this.minimax(depth, 0);
+		}
+
+		private double minimax(int depth, int ply)
+		{
+			Position position = this.position;
+			int[] moves = this.moveLists[ply];
+			if(depth <= 0)
+			{
+				if(!MoveGenerator.hasLegalMove(position, moves))
+				{
+					return PositionSearcher.getNoMovesUtility(position, this.maxColor);
+				}
+				if(position.isLoneKings())
+				{
+					return 0.0;
+				}
+				AttackMap attackMap = this.attackMaps[ply];
+				attackMap.setPosition(position);
+				return this.evaluator.getMaxPlayerHeuristicValue(attackMap, this.maxColor);
+			}
+			if(position.isLoneKings())
+			{
+				return 0.0;
+			}
+
+			int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+			if(numMoves == 0)
+			{
+				return PositionSearcher.getNoMovesUtility(position, this.maxColor);
+			}
+			boolean isMaxPlayer = position.getSideToMove() == this.maxColor;
+			double bestValue = isMaxPlayer ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+			{
+				position.makeMove(moves[moveIdx]);
+				double value = this.minimax(depth - 1, ply + 1);
+				position.unmakeMove();
+				bestValue = isMaxPlayer ? Math.max(bestValue, value) : Math.min(bestValue, value);
+			}
+			return bestValue;
+		}
+	}
+
+	private final int depth;
+	private final String referenceName;
+	private final String[] agentArgs;
+
+	// AlphaBetaAgent's private searcher, the way MinimaxReflectionAgent gets at it
+	private final Constructor<?> alphaBetaSearcherConstructor;
+	private final Method alphaBetaCallMethod;
+
+	// one agent (and so one transposition table) and one reference minimax per worker thread
+	private final ThreadLocal<AlphaBetaAgent> agents;
+	private final ThreadLocal<PositionMinimax> positionMinimaxes;
+	private final List<AlphaBetaAgent> allAgents;
+
+	/**
+	 * @param depth how deep both sides search
+	 * @param referenceName "position" or "tree" (see the class comment)
+	 * @param agentOptions the key=value options of AlphaBetaAgent
+	 */
+	public DifferentialTester(int depth, String referenceName, List<String> agentOptions)
+	    throws ReflectiveOperationException
+	{
+		this.depth = depth;
+		this.referenceName = referenceName;
+
+		List<String> agentArgs = new ArrayList<String>();
+		agentArgs.add("0");
+		agentArgs.add("WHITE");
+		agentArgs.add(String.valueOf(Integer.MAX_VALUE / 1000)); // the clock is never looked at
+		agentArgs.add(String.valueOf(depth));
+		if(agentOptions.stream().noneMatch(option -> option.toLowerCase().startsWith("quiescence=")))
+		{
+			agentArgs.add("quiescence=false");
+		}
+		agentArgs.addAll(agentOptions);
+		this.agentArgs = agentArgs.toArray(new String[agentArgs.size()]);
+
+		Class<?> alphaBetaSearcherClass = Class.forName("src.pas.chess.agents.AlphaBetaAgent$AlphaBetaSearcher");
+		this.alphaBetaSearcherConstructor = alphaBetaSearcherClass.getDeclaredConstructors()[0];
+		this.alphaBetaSearcherConstructor.setAccessible(true);
+		this.alphaBetaCallMethod = alphaBetaSearcherClass.getDeclaredMethod("call");
+		this.alphaBetaCallMethod.setAccessible(true);
+
+		this.allAgents = new ArrayList<AlphaBetaAgent>();
+		this.agents = ThreadLocal.withInitial(this::createAgent);
+		this.positionMinimaxes = ThreadLocal.withInitial(() -> new PositionMinimax(this.getAgent().getEvaluator()));
+	}
+
+	public int getDepth() { return this.depth; }
+	public String getReferenceName() { return this.referenceName; }
+	public boolean usesTreeReference() { return this.getReferenceName().equals(DifferentialTester.TREE_REFERENCE); }
+
+	private AlphaBetaAgent createAgent()
+	{
+		AlphaBetaAgent agent = new AlphaBetaAgent(0, this.agentArgs);
+		synchronized(this.allAgents)
+		{
+			this.allAgents.add(agent);
+		}
+		return agent;
+	}
+
+	private AlphaBetaAgent getAgent() { return this.agents.get(); }
+
+	/**
+	 * Release what the agents hold on to (e.g. the workers of searcher=ybw)
+	 */
+	public void close()
+	{
+		synchronized(this.allAgents)
+		{
+			for(AlphaBetaAgent agent : this.allAgents)
+			{
+				agent.terminalStep(null, null);
+			}
+		}
+	}
+
+	/**
+	 * Search one position with both sides (on the calling thread)
+	 */
+	public Result test(Entry entry) throws Exception
+	{
+		Game game = GameConverter.toGame(Fen.toPosition(entry.getFen()));
+
+		long startTime = System.nanoTime();
+		double minimaxValue = this.usesTreeReference()
+			? DifferentialTester.treeMinimax(new DFSTreeNode(game, game.getCurrentPlayer()), this.getDepth(),
+				this.getAgent().getEvaluator())
+			: this.positionMinimaxes.get().search(GameConverter.toPosition(game),
+				GameConverter.getColor(game.getCurrentPlayer()), this.getDepth());
+		long minimaxNanos = System.nanoTime() - startTime;
+
+		startTime = System.nanoTime();
+		DFSTreeNode rootNode = new DFSTreeNode(game, game.getCurrentPlayer());
+		AlphaBetaAgent agent = this.getAgent();
+		agent.getTranspositionTable().newSearch();
+		Object searcherObject = this.alphaBetaSearcherConstructor.newInstance(agent, rootNode, this.getDepth());
+		try
+		{
+			this.alphaBetaCallMethod.invoke(searcherObject);
+		} catch(InvocationTargetException e)
+		{
+			throw (Exception)e.getCause();
+		}
+		double alphaBetaValue = rootNode.getMaxPlayerUtilityValue();
+		long alphaBetaNanos = System.nanoTime() - startTime;
+
+		return new Result(entry, minimaxValue, alphaBetaValue, minimaxNanos, alphaBetaNanos);
+	}
+
+	/**
+	 * The minimax of MinimaxReflectionAgent, over DFSTreeNodes
+	 */
+	public static double treeMinimax(DFSTreeNode node, int depth, Evaluator evaluator)
+	{
+		if(node.isTerminal())
+		{
+			return node.getMaxPlayerUtilityValue();
+		}
+		if(depth <= 0)
+		{
+			return evaluator.getMaxPlayerHeuristicValue(node);
+		}
+
+		boolean isMaxPlayer = node.getType() == DFSTreeNodeType.MAX;
+		double bestValue = isMaxPlayer ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		for(DFSTreeNode child : node.getChildren())
+		{
+			double value = DifferentialTester.treeMinimax(child, depth - 1, evaluator);
+			bestValue = isMaxPlayer ? Math.max(bestValue, value) : Math.min(bestValue, value);
+		}
+		return bestValue;
+	}
+
+	/**
+	 * Read a FEN file, one position per line (blank lines and lines starting with # are skipped)
+	 * @throws IOException if the file cannot be read or a FEN is malformed ("path:line: message")
+	 */
+	public static List<Entry> readCorpus(Path path) throws IOException
+	{
+		List<Entry> entries = new ArrayList<Entry>();
+		try(BufferedReader reader = Files.newBufferedReader(path))
+		{
+			int lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				++lineNumber;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+				try
+				{
+					Fen.toPosition(line);
+				} catch(IllegalArgumentException e)
+				{
+					throw new IOException(path + ":" + lineNumber + ": " + e.getMessage());
+				}
+				entries.add(new Entry(lineNumber, line));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Test every entry on numWorkers threads, printing each mismatch (in corpus order) and a summary
+	 * @return true if every position gave the same value both ways
+	 */
+	public boolean run(List<Entry> entries, int numWorkers)
+	{
+		SearchScheduler scheduler = new SearchScheduler(this.getClass().getSimpleName(), numWorkers);
+		List<Future<Result> > futures = new ArrayList<Future<Result> >(entries.size());
+		for(Entry entry : entries)
+		{
+			futures.add(scheduler.submit((Callable<Result>)() -> this.test(entry)));
+		}
+
+		long startTime = System.nanoTime();
+		int numMismatches = 0;
+		int numErrors = 0;
+		long minimaxNanos = 0;
+		long alphaBetaNanos = 0;
+		for(int entryIdx = 0; entryIdx < entries.size(); ++entryIdx)
+		{
+			Entry entry = entries.get(entryIdx);
+			try
+			{
+				Result result = futures.get(entryIdx).get();
+				minimaxNanos += result.getMinimaxNanos();
+				alphaBetaNanos += result.getAlphaBetaNanos();
+				if(result.isMismatch())
+				{
+					++numMismatches;
+					System.out.println("MISMATCH line " + entry.getLineNumber() + ": minimax=" + result.getMinimaxValue()
+						+ " alphabeta=" + result.getAlphaBetaValue() + "  " + entry.getFen());
+				}
+			} catch(ExecutionException e)
+			{
+				++numErrors;
+				System.out.println("ERROR line " + entry.getLineNumber() + ": " + e.getCause() + "  " + entry.getFen());
+			} catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		long elapsedNanos = System.nanoTime() - startTime;
+		scheduler.shutdown();
+
+		boolean passed = numMismatches == 0 && numErrors == 0;
+		System.out.println((passed ? "passed: " : "FAILED: ") + entries.size() + " positions at depth " + this.getDepth()
+			+ " (reference=" + this.getReferenceName() + ", workers=" + numWorkers + "), "
+			+ numMismatches + " mismatches, " + numErrors + " errors, "
+			+ String.format("%.1f s (minimax %.1f s, alphabeta %.1f s of search time)",
+				elapsedNanos / 1e9, minimaxNanos / 1e9, alphaBetaNanos / 1e9));
+		return passed;
+	}
+
+	/**
+	 * count distinct positions after random legal moves from the start position, none of them already over
+	 */
+	public static List<String> generate(int count, long seed)
+	{
+		Random random = new Random(seed);
+		int[] moves = new int[Moves.MAX_MOVES];
+		Set<String> fens = new LinkedHashSet<String>();
+		while(fens.size() < count)
+		{
+			Position position = Fen.toPosition(Fen.START_POSITION);
+			int numPlies = DifferentialTester.MIN_RANDOM_PLIES
+				+ random.nextInt(DifferentialTester.MAX_RANDOM_PLIES - DifferentialTester.MIN_RANDOM_PLIES + 1);
+			boolean isOver = false;
+			for(int ply = 0; ply < numPlies && !isOver; ++ply)
+			{
+				int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+				position.makeMove(moves[random.nextInt(numMoves)]);
+				isOver = !MoveGenerator.hasLegalMove(position, moves) || position.isLoneKings();
+			}
+			if(!isOver)
+			{
+				fens.add(Fen.toFen(position));
+			}
+		}
+		return new ArrayList<String>(fens);
+	}
+
+	private static void printUsageAndExit()
+	{
+		System.err.println("DifferentialTester.main [ERROR]: usage: DifferentialTester run [<path>] [<depth>] [key=value ...]");
+		System.err.println("                                        DifferentialTester generate <path> <count> [<seed>]");
+		System.exit(-1);
+	}
+
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			DifferentialTester.printUsageAndExit();
+		}
+
+		if(args[0].equals("generate"))
+		{
+			if(args.length < 3)
+			{
+				DifferentialTester.printUsageAndExit();
+			}
+			Path path = Paths.get(args[1]);
+			int count = 0;
+			long seed = 0L;
+			try
+			{
+				count = Integer.parseInt(args[2]);
+				seed = args.length > 3 ? Long.parseLong(args[3]) : 0L;
+			} catch(NumberFormatException e)
+			{
+				DifferentialTester.printUsageAndExit();
+			}
+			try(BufferedWriter writer = Files.newBufferedWriter(path))
+			{
+				writer.write("# " + count + " positions from DifferentialTester generate (seed " + seed + "): "
+					+ DifferentialTester.MIN_RANDOM_PLIES + " to " + DifferentialTester.MAX_RANDOM_PLIES
+					+ " random legal moves from the start position");
+				writer.newLine();
+				for(String fen : DifferentialTester.generate(count, seed))
+				{
+					writer.write(fen);
+					writer.newLine();
+				}
+			} catch(IOException e)
+			{
+				System.err.println("DifferentialTester.main [ERROR]: could not write " + path + ": " + e.getMessage());
+				System.exit(-1);
+			}
+			System.exit(0);
+		}
+
+		if(!args[0].equals("run"))
+		{
+			DifferentialTester.printUsageAndExit();
+		}
+
+		// positional args first, then our own options, everything else is for the agent
+		List<String> positionalArgs = new ArrayList<String>();
+		Map<String, String> options = new HashMap<String, String>();
+		List<String> agentOptions = new ArrayList<String>();
+		for(int argIdx = 1; argIdx < args.length; ++argIdx)
+		{
+			int separatorIdx = args[argIdx].indexOf('=');
+			String key = separatorIdx > 0 ? args[argIdx].substring(0, separatorIdx).trim().toLowerCase() : null;
+			if(key == null)
+			{
+				positionalArgs.add(args[argIdx]);
+			} else if(key.equals("workers") || key.equals("reference"))
+			{
+				options.put(key, args[argIdx].substring(separatorIdx + 1).trim());
+			} else
+			{
+				agentOptions.add(args[argIdx]);
+			}
+		}
+
+		Path path = Paths.get(positionalArgs.size() > 0 ? positionalArgs.get(0) : DifferentialTester.DEFAULT_CORPUS_PATH);
+		int depth = DifferentialTester.DEFAULT_DEPTH;
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		try
+		{
+			if(positionalArgs.size() > 1)
+			{
+				depth = Integer.parseInt(positionalArgs.get(1));
+			}
+			numWorkers = Math.max(1, Integer.parseInt(options.getOrDefault("workers", String.valueOf(numWorkers))));
+		} catch(NumberFormatException e)
+		{
+			DifferentialTester.printUsageAndExit();
+		}
+		String referenceName = options.getOrDefault("reference", DifferentialTester.POSITION_REFERENCE).toLowerCase();
+		if(!referenceName.equals(DifferentialTester.POSITION_REFERENCE) && !referenceName.equals(DifferentialTester.TREE_REFERENCE))
+		{
+			System.err.println("DifferentialTester.main [ERROR]: unknown reference=" + referenceName + ", expected "
+				+ DifferentialTester.POSITION_REFERENCE + " or " + DifferentialTester.TREE_REFERENCE);
+			System.exit(-1);
+		}
+
+		List<Entry> entries = null;
+		DifferentialTester tester = null;
+		try
+		{
+			entries = DifferentialTester.readCorpus(path);
+			tester = new DifferentialTester(depth, referenceName, agentOptions);
+		} catch(IOException e)
+		{
+			System.err.println("DifferentialTester.main [ERROR]: could not read corpus " + e.getMessage());
+			System.exit(-1);
+		} catch(ReflectiveOperationException e)
+		{
+			System.err.println("DifferentialTester.main [ERROR]: cannot reach AlphaBetaAgent's searcher: " + e);
+			System.exit(-1);
+		}
+
+		boolean passed = tester.run(entries, numWorkers);
+		tester.close();
+		System.exit(passed ? 0 : 1);
+	}
+
+}
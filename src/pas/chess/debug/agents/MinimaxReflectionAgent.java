@@ -24,8 +24,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -36,6 +34,8 @@ import java.lang.reflect.Method;
 // JAVA PROJECT IMPORTS
 import src.pas.chess.heuristics.CustomHeuristics;
 import src.pas.chess.agents.AlphaBetaAgent;
+import src.pas.chess.search.SearchScheduler;
+import src.pas.chess.search.SearchStoppedException;
 
 
 public class MinimaxReflectionAgent
@@ -108,6 +108,12 @@ public class MinimaxReflectionAgent
 
 		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
 		{
+			// cancelled by the agent after a timeout: unwind instead of finishing a search nobody waits for
+			if(Thread.currentThread().isInterrupted())
+			{
+				throw new SearchStoppedException();
+			}
+
 			DFSTreeNode bestChild = null;
 			if(node.isTerminal()) // terminal state!
 			{
@@ -170,6 +176,9 @@ public class MinimaxReflectionAgent
 
 	private Player myPlayer;
 
+	// the thread searches run on, created on the first move and kept for the whole game
+	private SearchScheduler searchScheduler;
+
     private final AlphaBetaAgent      alphaBetaAgent;
     private final Class<?>            alphaBetaSearcherClassType;
     private final Constructor<?>      alphaBetaSearcherConstructor;
@@ -270,6 +279,15 @@ public class MinimaxReflectionAgent
 	@Override
 	protected Player getPlayer() { return this.myPlayer; }
 
+	private SearchScheduler getSearchScheduler()
+	{
+		if(this.searchScheduler == null)
+		{
+			this.searchScheduler = new SearchScheduler(this.getClass().getSimpleName(), 1);
+		}
+		return this.searchScheduler;
+	}
+
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
 	 * There is some setup for this to work, namely making sure the agent doesn't run out of time.
@@ -281,7 +299,7 @@ public class MinimaxReflectionAgent
         Planner.getPlanner().freeze(this.getPlayer());
 
 		// will run the minimax algorithm in a background thread with a timeout
-		ExecutorService backgroundThreadManager = Executors.newSingleThreadExecutor();
+		SearchScheduler searchScheduler = this.getSearchScheduler();
 
 		// preallocate so we don't spend precious time doing it when we are recording duration
 		Move move = null;
@@ -295,8 +313,8 @@ public class MinimaxReflectionAgent
         );
 
 		// submit the job
-		Future<Pair<Move, Double> > minimaxFuture = backgroundThreadManager.submit(minimaxSearcherObject);
-        Future<Pair<Move, Double> > alphaBetaFuture = backgroundThreadManager.submit(alphaBetaSearcherObject);
+		Future<Pair<Move, Double> > minimaxFuture = searchScheduler.submit(minimaxSearcherObject);
+        Future<Pair<Move, Double> > alphaBetaFuture = searchScheduler.submit(alphaBetaSearcherObject);
         
 
 		try
@@ -324,6 +342,10 @@ public class MinimaxReflectionAgent
 			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
+			// neither result is of any use now, do not let them keep searching in the background
+			SearchScheduler.cancel(minimaxFuture);
+			SearchScheduler.cancel(alphaBetaFuture);
+
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
 		} catch(InterruptedException e)
 		{
@@ -431,7 +453,13 @@ public class MinimaxReflectionAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
-		// TODO Auto-generated method stub
+		// the game is over, release the search thread
+		if(this.searchScheduler != null)
+		{
+			this.searchScheduler.shutdown();
+			this.searchScheduler = null;
+		}
+
         System.out.println("MinimaxReflectionAgent: numMoves=" + this.getNumMoves() +
             " numDifferentUtilityMoves=" + this.getNumDifferentUtilityMoves());
 	}
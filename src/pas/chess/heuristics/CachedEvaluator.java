@@ -0,0 +1,57 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Puts an EvaluationCache in front of another evaluator: a position that was already evaluated (for the same max
+ * player) gets its score from the cache instead of being evaluated again. Every score is rounded the way the cache
+ * stores it, hit or miss, so a position always gets the same value, but values are no longer exactly the
+ * wrapped evaluator's.
+ *
+ * Safe to share between the threads of a search as long as the wrapped evaluator is.
+ */
+public class CachedEvaluator
+    extends Object
+    implements Evaluator
+{
+
+	// the same position evaluated for the other max player is a different entry
+	private static final long BLACK_MAX_PLAYER_KEY = 0x9E3779B97F4A7C15L;
+
+	private final Evaluator evaluator;
+	private final EvaluationCache cache;
+
+	public CachedEvaluator(Evaluator evaluator, EvaluationCache cache)
+	{
+		this.evaluator = evaluator;
+		this.cache = cache;
+	}
+
+	public Evaluator getEvaluator() { return this.evaluator; }
+	public EvaluationCache getCache() { return this.cache; }
+
+	@Override
+	public double getDeltaMargin() { return this.getEvaluator().getDeltaMargin(); }
+	@Override
+	public double getAspirationWindow() { return this.getEvaluator().getAspirationWindow(); }
+
+	@Override
+	public double getMaxPlayerHeuristicValue(AttackMap attackMap, int maxColor)
+	{
+		long key = attackMap.getPosition().getKey() ^ (maxColor == Position.BLACK ? BLACK_MAX_PLAYER_KEY : 0L);
+		double score = this.getCache().probe(key);
+		if(Double.isNaN(score))
+		{
+			score = this.getCache().store(key, this.getEvaluator().getMaxPlayerHeuristicValue(attackMap, maxColor));
+		}
+		return score;
+	}
+
+}
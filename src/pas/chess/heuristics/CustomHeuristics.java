@@ -2,106 +2,148 @@ package src.pas.chess.heuristics;
 
 
 // SYSTEM IMPORTS
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
 import edu.bu.chess.search.DFSTreeNode;
 
 
 // JAVA PROJECT IMPORTS
-import src.pas.chess.heuristics.DefaultHeuristics;
-
-
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.Bitboards;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.Squares;
+
+
+/**
+ * The search evaluates Positions (see src.pas.chess.position) so it never has to build a Game per node.
+ * The DFSTreeNode versions convert the node's game once and give exactly the same values.
+ * Attack questions go through an AttackMap so that they are answered once per position, no matter how many
+ * of the heuristics below ask them.
+ * Everything that only depends on which pieces are where (piece counts, pawns on a given rank) is read from
+ * the counts the Position keeps up to date on make/unmake, and pawn terms from the shared PawnHashTable,
+ * so only the attack terms do real work at a leaf.
+ */
 public class CustomHeuristics
     extends Object
 {
 
-	public static double getOffensiveMaxPlayerHeuristicValue(DFSTreeNode node) {
-        double score = 0.0;
-
-        int numThreatenedPieces = DefaultHeuristics.OffensiveHeuristics.getNumberOfPiecesMaxPlayerIsThreatening(node);
+    private static final int[] POINT_VALUES = new int[Position.NUM_PIECE_TYPES];
+    static {
+        for (PieceType pieceType : PieceType.values()) {
+            POINT_VALUES[pieceType.ordinal()] = Piece.getPointValue(pieceType);
+        }
+    }
 
-        for (Piece piece : node.getGame().getBoard().getPieces(DefaultHeuristics.getMinPlayer(node))) {
-            if (isPieceThreatened(node, piece)) { 
-                score += Piece.getPointValue(piece.getType());
-            }
+    // PIECE_COMBINATION_VALUES[n] = n^1.5, the value of having n pieces of one type
+    private static final double[] PIECE_COMBINATION_VALUES = new double[Squares.NUM_SQUARES + 1];
+    static {
+        for (int numPieces = 0; numPieces < PIECE_COMBINATION_VALUES.length; numPieces++) {
+            PIECE_COMBINATION_VALUES[numPieces] = Math.pow(numPieces, 1.5);
         }
+    }
 
-        score += countPawnsCloseToPromotion(node);
+    private static Position toPosition(DFSTreeNode node) {
+        return GameConverter.toPosition(node.getGame());
+    }
 
-        return score + numThreatenedPieces;
+    private static int getMaxColor(DFSTreeNode node) {
+        return GameConverter.getColor(DefaultHeuristics.getMaxPlayer(node));
     }
 
-    public static double getDefensiveMaxPlayerHeuristicValue(DFSTreeNode node) {
-        double score = 0.0;
+	public static double getOffensiveMaxPlayerHeuristicValue(DFSTreeNode node) {
+        return getOffensiveMaxPlayerHeuristicValue(toPosition(node), getMaxColor(node));
+    }
 
-        score += DefaultHeuristics.DefensiveHeuristics.getNumberOfMaxPlayersAlivePieces(node);
+    public static double getDefensiveMaxPlayerHeuristicValue(DFSTreeNode node) {
+        return getDefensiveMaxPlayerHeuristicValue(toPosition(node), getMaxColor(node));
+    }
 
-        score -= DefaultHeuristics.DefensiveHeuristics.getNumberOfPiecesThreateningMaxPlayer(node);
+    public static double getNonlinearPieceCombinationMaxPlayerHeuristicValue(DFSTreeNode node) {
+        return getNonlinearPieceCombinationMaxPlayerHeuristicValue(toPosition(node), getMaxColor(node));
+    }
 
-        score += DefaultHeuristics.DefensiveHeuristics.getClampedPieceValueTotalSurroundingMaxPlayersKing(node);
+    public static double getOffensiveMaxPlayerHeuristicValue(Position position, int maxColor) {
+        return getOffensiveMaxPlayerHeuristicValue(new AttackMap(position), maxColor);
+    }
 
-        return score;
+    public static double getDefensiveMaxPlayerHeuristicValue(Position position, int maxColor) {
+        return getDefensiveMaxPlayerHeuristicValue(new AttackMap(position), maxColor);
     }
 
-    public static double getNonlinearPieceCombinationMaxPlayerHeuristicValue(DFSTreeNode node) {
+    public static double getOffensiveMaxPlayerHeuristicValue(AttackMap attackMap, int maxColor) {
+        Position position = attackMap.getPosition();
         double score = 0.0;
 
-        score += DefaultHeuristics.getNonlinearPieceCombinationMaxPlayerHeuristicValue(node);
+        int numThreatenedPieces = attackMap.getNumCaptureTargets(maxColor);
 
-        score += countDevelopedPieces(node);
+        score += countPawnsCloseToPromotion(position, maxColor);
 
-        return score;
-    }
-
-    private static boolean isPieceThreatened(DFSTreeNode node, Piece piece) {
-        for (Piece enemyPiece : node.getGame().getBoard().getPieces(DefaultHeuristics.getMinPlayer(node))) {
-            if (enemyPiece.getAllCaptureMoves(node.getGame()).contains(node.getGame().getCurrentPosition(piece))) {
-                return true;
-            }
-        }
-        return false;
+        return score + numThreatenedPieces;
     }
 
-    private static double countPawnsCloseToPromotion(DFSTreeNode node) {
+    public static double getDefensiveMaxPlayerHeuristicValue(AttackMap attackMap, int maxColor) {
+        Position position = attackMap.getPosition();
         double score = 0.0;
 
-        for (Piece pawn : node.getGame().getBoard().getPieces(DefaultHeuristics.getMaxPlayer(node), PieceType.PAWN)) {
-            Coordinate position = node.getGame().getCurrentPosition(pawn);
-            if (isCloseToPromotion(position)) {
-                score += 10; 
-            }
-        }
+        score += position.getNumPieces(maxColor);
 
-        return score;
-    }
+        score -= attackMap.getNumCaptureTargets(Position.getOtherColor(maxColor));
 
+        score += getClampedPieceValueTotalSurroundingKing(position, maxColor);
 
-    private static boolean isCloseToPromotion(Coordinate position) {
-        return position.getYPosition() == 7; 
+        return score;
     }
 
-    private static double countDevelopedPieces(DFSTreeNode node) {
+    public static double getNonlinearPieceCombinationMaxPlayerHeuristicValue(Position position, int maxColor) {
         double score = 0.0;
 
-        for (Piece piece : node.getGame().getBoard().getPieces(DefaultHeuristics.getMaxPlayer(node))) {
-            if (!isInStartingPosition(piece, node)) {
-                score += 1.0; 
-            }
-        }
+        score += getNonlinearPieceCombinationValue(position, maxColor);
+
+        score += countDevelopedPieces(position, maxColor);
 
         return score;
     }
 
+    /**
+     * Same as DefaultHeuristics.DefensiveHeuristics.getClampedPieceValueTotalSurroundingMaxPlayersKing
+     */
+    private static int getClampedPieceValueTotalSurroundingKing(Position position, int color) {
+        long neighbors = Bitboards.getKingAttacks(position.getKingSquare(color));
+        long friends = neighbors & position.getColorBoard(color);
+        long enemies = neighbors & position.getColorBoard(Position.getOtherColor(color));
+
+        int total = 0;
+        for (int type = 0; type < Position.NUM_PIECE_TYPES; type++) {
+            total += POINT_VALUES[type] * (Bitboards.count(friends & position.getPieceBoard(color, type))
+                    - Bitboards.count(enemies & position.getPieceBoard(Position.getOtherColor(color), type)));
+        }
+        return Math.max(total, 0);
+    }
+
+    /**
+     * Same as DefaultHeuristics.getNonlinearPieceCombinationMaxPlayerHeuristicValue
+     */
+    private static double getNonlinearPieceCombinationValue(Position position, int color) {
+        double multiPieceValueTotal = 0.0;
+        multiPieceValueTotal += PIECE_COMBINATION_VALUES[position.getNumPieces(color, Position.BISHOP)];
+        multiPieceValueTotal += PIECE_COMBINATION_VALUES[position.getNumPieces(color, Position.KNIGHT)];
+        multiPieceValueTotal += PIECE_COMBINATION_VALUES[position.getNumPieces(color, Position.ROOK)];
+        multiPieceValueTotal += PIECE_COMBINATION_VALUES[position.getNumPieces(color, Position.QUEEN)];
+        return multiPieceValueTotal;
+    }
 
-    private static boolean isInStartingPosition(Piece piece, DFSTreeNode node) {
-        Coordinate position = node.getGame().getCurrentPosition(piece);
-        PieceType type = piece.getType();
-        Player player = DefaultHeuristics.getMaxPlayer(node);
+    private static double countPawnsCloseToPromotion(Position position, int color) {
+        long pawnStructure = PawnHashTable.getShared().get(position);
+        return 10.0 * PawnStructure.getNumPawnsOnCloseToPromotionRank(pawnStructure, color);
+    }
 
-        if (type == PieceType.PAWN) {
-            int startingRank = player.getPlayerID() == 0 ? 1 : 6; 
-            return position.getYPosition() == startingRank;
-        }
+    private static double countDevelopedPieces(Position position, int color) {
+        // pawns still on y == 1 (player 0) or y == 6 (everyone else) count as undeveloped
+        int startingY = position.getPlayerID(color) == 0 ? 1 : 6;
+        int undeveloped = position.getNumPawnsOnRank(color, 8 - startingY);
 
-        return false; 
+        return position.getNumPieces(color) - undeveloped;
     }
 
     /**
@@ -110,10 +152,23 @@ public class CustomHeuristics
 	 * in DefaultHeuristics.java (which is in the same directory as this file)
 	 */
     public static double getMaxPlayerHeuristicValue(DFSTreeNode node) {
-		// please replace this!
-        double offenseHeuristic = getOffensiveMaxPlayerHeuristicValue(node);
-        double defenseHeuristic = getDefensiveMaxPlayerHeuristicValue(node);
-        double nonlinearHeuristic = getNonlinearPieceCombinationMaxPlayerHeuristicValue(node);
+        return getMaxPlayerHeuristicValue(toPosition(node), getMaxColor(node));
+    }
+
+    public static double getMaxPlayerHeuristicValue(Position position, int maxColor) {
+        return getMaxPlayerHeuristicValue(new AttackMap(position), maxColor);
+    }
+
+    /**
+     * The capture target counts (AttackMap.getNumCaptureTargets) are the same pairs as
+     * DefaultHeuristics.OffensiveHeuristics.getNumberOfPiecesMaxPlayerIsThreatening (for max)
+     * and DefaultHeuristics.DefensiveHeuristics.getNumberOfPiecesThreateningMaxPlayer (for min)
+     */
+    public static double getMaxPlayerHeuristicValue(AttackMap attackMap, int maxColor) {
+        Position position = attackMap.getPosition();
+        double offenseHeuristic = getOffensiveMaxPlayerHeuristicValue(attackMap, maxColor);
+        double defenseHeuristic = getDefensiveMaxPlayerHeuristicValue(attackMap, maxColor);
+        double nonlinearHeuristic = getNonlinearPieceCombinationMaxPlayerHeuristicValue(position, maxColor);
 
         // Combine all heuristics into a single value
         return offenseHeuristic + defenseHeuristic + nonlinearHeuristic;
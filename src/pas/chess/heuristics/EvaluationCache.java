@@ -0,0 +1,116 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A fixed-size cache of evaluations keyed by position hash, for the leaves a search reaches more than once
+ * (through transpositions, and again in every iteration of iterative deepening).
+ *
+ * Each slot is a single long holding the top CHECK_BITS bits of the key next to the top SCORE_BITS bits of the
+ * score's double representation, so one slot is always read and written in one go and threads can share the
+ * cache without locks: a slot either belongs to the key probed or it does not, there is no half-written entry.
+ * The price is the score's low mantissa bits: a cached score is within a relative 2^-28 (about 4e-9) of the
+ * real one. The slot index stands for the low bits of the key, so with the default size 16 bits of the key plus
+ * (almost all of) the CHECK_BITS top bits are checked. Slots are always replaced.
+ *
+ * Probes and hits are counted (with LongAdders, so that counting does not make the threads contend either).
+ */
+public class EvaluationCache
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_ENTRIES = 1 << 16;
+
+	private static final int SCORE_BITS = 40;
+	private static final int CHECK_BITS = Long.SIZE - SCORE_BITS;
+	private static final long SCORE_MASK = (1L << SCORE_BITS) - 1;
+
+	private final long[] slots;
+	private final int mask;
+
+	private final LongAdder numProbes;
+	private final LongAdder numHits;
+
+	/**
+	 * @param numEntries rounded down to a power of 2
+	 */
+	public EvaluationCache(int numEntries)
+	{
+		int size = Integer.highestOneBit(Math.max(1, numEntries));
+		this.slots = new long[size];
+		this.mask = size - 1;
+		this.numProbes = new LongAdder();
+		this.numHits = new LongAdder();
+	}
+
+	public EvaluationCache()
+	{
+		this(EvaluationCache.DEFAULT_NUM_ENTRIES);
+	}
+
+	public int getNumEntries() { return this.slots.length; }
+	public long getNumProbes() { return this.numProbes.sum(); }
+	public long getNumHits() { return this.numHits.sum(); }
+
+	/**
+	 * The fraction of probes that were hits (0 before the first probe)
+	 */
+	public double getHitRate()
+	{
+		long numProbes = this.getNumProbes();
+		return numProbes == 0 ? 0.0 : (double)this.getNumHits() / numProbes;
+	}
+
+	public void resetCounters()
+	{
+		this.numProbes.reset();
+		this.numHits.reset();
+	}
+
+	/**
+	 * The check bits of a key, never 0 so that an empty slot (0) never matches
+	 */
+	private static long getCheck(long key) { return (key >>> SCORE_BITS) | 1L; }
+
+	/**
+	 * The cached score of the position with this key, or NaN if it is not in the cache
+	 */
+	public double probe(long key)
+	{
+		this.numProbes.increment();
+		long slot = this.slots[(int)key & this.mask];
+		if((slot >>> SCORE_BITS) != EvaluationCache.getCheck(key))
+		{
+			return Double.NaN;
+		}
+		this.numHits.increment();
+		return Double.longBitsToDouble((slot & SCORE_MASK) << CHECK_BITS);
+	}
+
+	/**
+	 * @return score as probe will hand it back, which callers should use instead of score itself: a position
+	 *         must not get a slightly different value depending on whether it happened to be in the cache
+	 */
+	public double store(long key, double score)
+	{
+		long scoreBits = Double.doubleToRawLongBits(score) >>> CHECK_BITS;
+		this.slots[(int)key & this.mask] = (EvaluationCache.getCheck(key) << SCORE_BITS) | scoreBits;
+		return Double.longBitsToDouble(scoreBits << CHECK_BITS);
+	}
+
+	/**
+	 * Empty every slot (the counters are kept)
+	 */
+	public void clear()
+	{
+		Arrays.fill(this.slots, 0L);
+	}
+
+}
@@ -0,0 +1,65 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.search.DFSTreeNode;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.Position;
+
+
+/**
+ * A heuristic the search can be run with: the value of a position from the max player's point of view.
+ * The search only calls the AttackMap version, on the map of the ply it is evaluating, so an evaluator that
+ * asks attack questions shares the answers with the move orderer. The other versions are for everything else.
+ *
+ * The margins the search prunes with depend on how far an evaluator's values swing, so each evaluator says
+ * what they are (getDeltaMargin, getAspirationWindow). The defaults were measured on CustomHeuristics.
+ *
+ * Implementations must be safe to call from several search threads at once.
+ * DefaultHeuristics is not one of them: it only works on DFSTreeNodes, so it stays with the minimax agents.
+ */
+public interface Evaluator
+{
+
+	/**
+	 * CustomHeuristics.getMaxPlayerHeuristicValue: what minimax over DFSTreeNodes computes, so the default
+	 */
+	public static final Evaluator CUSTOM_HEURISTICS = CustomHeuristics::getMaxPlayerHeuristicValue;
+
+	// measured on random games: 99% of captures move CustomHeuristics within 12 of the captured piece's point
+	// value, and from one iterative deepening depth to the next its value moves by 4 or less 90% of the time
+	public static final double DEFAULT_DELTA_MARGIN = 15.0;
+	public static final double DEFAULT_ASPIRATION_WINDOW = 4.0;
+
+	/**
+	 * @param attackMap attached to the position to evaluate
+	 * @param maxColor the color of the max player
+	 */
+	public double getMaxPlayerHeuristicValue(AttackMap attackMap, int maxColor);
+
+	public default double getMaxPlayerHeuristicValue(Position position, int maxColor)
+	{
+		return this.getMaxPlayerHeuristicValue(new AttackMap(position), maxColor);
+	}
+
+	public default double getMaxPlayerHeuristicValue(DFSTreeNode node)
+	{
+		return this.getMaxPlayerHeuristicValue(GameConverter.toPosition(node.getGame()),
+			GameConverter.getColor(DefaultHeuristics.getMaxPlayer(node)));
+	}
+
+	/**
+	 * How much a capture may move the value beyond the captured piece's point value (delta pruning in quiescence)
+	 */
+	public default double getDeltaMargin() { return Evaluator.DEFAULT_DELTA_MARGIN; }
+
+	/**
+	 * How far either side of the previous depth's value the root window of the next depth starts (aspiration windows)
+	 */
+	public default double getAspirationWindow() { return Evaluator.DEFAULT_ASPIRATION_WINDOW; }
+
+}
@@ -0,0 +1,67 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+
+
+/**
+ * A cache of PawnStructure.evaluate keyed by Position.getPawnKey(). The pawns hardly ever change between the
+ * positions a search evaluates (most moves are not pawn moves, and siblings share their parent's pawns), so
+ * almost every evaluation finds its pawn structure here instead of working it out.
+ *
+ * A pawn structure does not depend on anything but the pawns, so one table is shared by every search and every
+ * thread (getShared). Like TranspositionTable it needs no locking: each slot stores the key XORed with the
+ * structure, so a slot torn by two threads writing it at the same time no longer matches its key and is
+ * treated as a miss. Slots are always replaced.
+ */
+public class PawnHashTable
+    extends Object
+{
+
+	public static final int DEFAULT_NUM_ENTRIES = 1 << 14;
+
+	private static final PawnHashTable SHARED = new PawnHashTable(PawnHashTable.DEFAULT_NUM_ENTRIES);
+
+	private final long[] keys;       // pawn key XOR structure
+	private final long[] structures;
+	private final int mask;
+
+	/**
+	 * @param numEntries rounded down to a power of 2
+	 */
+	public PawnHashTable(int numEntries)
+	{
+		int size = Integer.highestOneBit(Math.max(1, numEntries));
+		this.keys = new long[size];
+		this.structures = new long[size];
+		this.mask = size - 1;
+	}
+
+	public static PawnHashTable getShared() { return PawnHashTable.SHARED; }
+
+	public int getNumEntries() { return this.structures.length; }
+
+	/**
+	 * The PawnStructure of the position, from the table if it is there and worked out (and stored) if not
+	 */
+	public long get(Position position)
+	{
+		long key = position.getPawnKey();
+		int slot = (int)key & this.mask;
+		long structure = this.structures[slot];
+		if((this.keys[slot] ^ structure) == key && structure != 0L)
+		{
+			return structure;
+		}
+
+		structure = PawnStructure.evaluate(position);
+		this.structures[slot] = structure;
+		this.keys[slot] = key ^ structure;
+		return structure;
+	}
+
+}
@@ -0,0 +1,141 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Bitboards;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.Squares;
+
+
+/**
+ * Everything the heuristics want to know about the pawns of a position, packed into one long so that it can be
+ * cached by pawn key (see PawnHashTable). For each color (FIELDS_PER_COLOR * BITS_PER_FIELD bits, white first):
+ *     passed                the pawns that no enemy pawn can stop: none in front on the same or an adjacent file
+ *     isolated              the pawns without a friendly pawn on an adjacent file
+ *     doubled               the pawns with a friendly pawn behind them on the same file
+ *     closeToPromotionRank  the pawns on y == 7, the rank CustomHeuristics.countPawnsCloseToPromotion looks at
+ *     promotionDistance     how many pushes the most advanced passed pawn is from promoting (NO_PASSED_PAWN if none)
+ * The top bit is always set, so that a packed structure is never 0 (what an empty table slot holds).
+ */
+public class PawnStructure
+    extends Object
+{
+
+	public static final int NO_PASSED_PAWN = 7;
+
+	private static final int PASSED = 0;
+	private static final int ISOLATED = 1;
+	private static final int DOUBLED = 2;
+	private static final int CLOSE_TO_PROMOTION_RANK = 3;
+	private static final int PROMOTION_DISTANCE = 4;
+	private static final int FIELDS_PER_COLOR = 5;
+	private static final int BITS_PER_FIELD = 4;
+	private static final long FIELD_MASK = (1L << BITS_PER_FIELD) - 1;
+	private static final long VALID = 1L << 63;
+
+	// pawns on y == 7 (the rank white pawns start on)
+	private static final long CLOSE_TO_PROMOTION_MASK = Bitboards.RANK_1 << (8 * (8 - 7));
+
+	private static final long[] FILE_MASKS = new long[8];
+	private static final long[] ADJACENT_FILE_MASKS = new long[8];
+
+	// PASSED_PAWN_MASKS[color][square]: the squares in front of a pawn, on its own file and the adjacent ones
+	private static final long[][] PASSED_PAWN_MASKS = new long[Position.NUM_COLORS][Squares.NUM_SQUARES];
+	static
+	{
+		for(int file = 0; file < 8; ++file)
+		{
+			FILE_MASKS[file] = Bitboards.FILE_A << file;
+		}
+		for(int file = 0; file < 8; ++file)
+		{
+			ADJACENT_FILE_MASKS[file] = (file > 0 ? FILE_MASKS[file - 1] : Bitboards.EMPTY)
+				| (file < 7 ? FILE_MASKS[file + 1] : Bitboards.EMPTY);
+		}
+		for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+		{
+			int file = Squares.getFile(square);
+			int rank = Squares.getRank(square);
+			long files = FILE_MASKS[file] | ADJACENT_FILE_MASKS[file];
+			for(int otherRank = 0; otherRank < 8; ++otherRank)
+			{
+				long rankMask = Bitboards.RANK_1 << (8 * otherRank);
+				if(otherRank > rank)
+				{
+					PASSED_PAWN_MASKS[Position.WHITE][square] |= files & rankMask;
+				} else if(otherRank < rank)
+				{
+					PASSED_PAWN_MASKS[Position.BLACK][square] |= files & rankMask;
+				}
+			}
+		}
+	}
+
+	private static int getField(long structure, int color, int field)
+	{
+		return (int)((structure >>> ((color * FIELDS_PER_COLOR + field) * BITS_PER_FIELD)) & FIELD_MASK);
+	}
+
+	private static long makeField(int color, int field, int value)
+	{
+		return ((long)value & FIELD_MASK) << ((color * FIELDS_PER_COLOR + field) * BITS_PER_FIELD);
+	}
+
+	public static int getNumPassedPawns(long structure, int color) { return PawnStructure.getField(structure, color, PASSED); }
+	public static int getNumIsolatedPawns(long structure, int color) { return PawnStructure.getField(structure, color, ISOLATED); }
+	public static int getNumDoubledPawns(long structure, int color) { return PawnStructure.getField(structure, color, DOUBLED); }
+	public static int getNumPawnsOnCloseToPromotionRank(long structure, int color) { return PawnStructure.getField(structure, color, CLOSE_TO_PROMOTION_RANK); }
+	public static int getPromotionDistance(long structure, int color) { return PawnStructure.getField(structure, color, PROMOTION_DISTANCE); }
+
+	/**
+	 * Work out the pawn structure of a position from scratch (PawnHashTable.get caches this)
+	 */
+	public static long evaluate(Position position)
+	{
+		long structure = VALID;
+		for(int color = 0; color < Position.NUM_COLORS; ++color)
+		{
+			long pawns = position.getPieceBoard(color, Position.PAWN);
+			long enemyPawns = position.getPieceBoard(Position.getOtherColor(color), Position.PAWN);
+
+			int numIsolated = 0;
+			int numDoubled = 0;
+			for(int file = 0; file < 8; ++file)
+			{
+				int numOnFile = Bitboards.count(pawns & FILE_MASKS[file]);
+				if(numOnFile > 1)
+				{
+					numDoubled += numOnFile - 1;
+				}
+				if(numOnFile > 0 && (pawns & ADJACENT_FILE_MASKS[file]) == 0)
+				{
+					numIsolated += numOnFile;
+				}
+			}
+
+			int numPassed = 0;
+			int promotionDistance = NO_PASSED_PAWN;
+			for(long remaining = pawns; remaining != 0; remaining = Bitboards.removeFirstSquare(remaining))
+			{
+				int square = Bitboards.getFirstSquare(remaining);
+				if((PASSED_PAWN_MASKS[color][square] & enemyPawns) == 0)
+				{
+					numPassed += 1;
+					int rank = Squares.getRank(square);
+					promotionDistance = Math.min(promotionDistance, color == Position.WHITE ? 7 - rank : rank);
+				}
+			}
+
+			structure |= PawnStructure.makeField(color, PASSED, numPassed)
+				| PawnStructure.makeField(color, ISOLATED, numIsolated)
+				| PawnStructure.makeField(color, DOUBLED, numDoubled)
+				| PawnStructure.makeField(color, CLOSE_TO_PROMOTION_RANK, Bitboards.count(pawns & CLOSE_TO_PROMOTION_MASK))
+				| PawnStructure.makeField(color, PROMOTION_DISTANCE, promotionDistance);
+		}
+		return structure;
+	}
+
+}
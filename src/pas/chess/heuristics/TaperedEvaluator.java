@@ -0,0 +1,355 @@
+package src.pas.chess.heuristics;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.Bitboards;
+import src.pas.chess.position.Position;
+import src.pas.chess.position.Squares;
+
+
+/**
+ * A table-driven evaluation: every piece is worth its material value plus what a piece-square table says about
+ * its square, once with midgame and once with endgame weights, and the pawn structure (PawnStructure: passed,
+ * isolated, and doubled pawns, and how close the most advanced passed pawn is to promoting) adds its own
+ * midgame and endgame terms. The two totals are blended by the game phase, which is worked out from the
+ * (non-pawn) material still on the board: full midgame with all pieces on it, sliding towards pure endgame as
+ * they come off. The tables are written for white and mirrored for black.
+ *
+ * Nothing here asks an attack question, and the pawn structure comes from the shared PawnHashTable, so an
+ * evaluation is a table lookup per piece and little more, cheap enough to call at every quiescence node.
+ * All weights are loaded from a file (see load, and DEFAULT_WEIGHTS_PATH for the format) and are in
+ * centipawns, values come out in Piece.getPointValue units (a pawn is 1) like the rest of the search expects.
+ */
+public class TaperedEvaluator
+    extends Object
+    implements Evaluator
+{
+
+	public static final String DEFAULT_WEIGHTS_PATH = "data/pas/chess/heuristics/tapered.weights";
+
+	private static final double CENTIPAWNS_PER_POINT = 100.0;
+
+	// measured like Evaluator's defaults, with the default weights: 99% of captures move the value within 1.6 of
+	// the captured piece's point value, and 90% of depth to depth changes are within 0.57
+	private static final double DELTA_MARGIN = 2.0;
+	private static final double ASPIRATION_WINDOW = 0.5;
+
+	private static final String[] TYPE_NAMES = new String[] {"king", "queen", "bishop", "knight", "rook", "pawn"};
+	private static final int MIDGAME = 0;
+	private static final int ENDGAME = 1;
+	private static final String[] STAGE_NAMES = new String[] {"midgame", "endgame"};
+	private static final int NUM_STAGES = 2;
+
+	private static final int PASSED = 0;
+	private static final int ISOLATED = 1;
+	private static final int DOUBLED = 2;
+	private static final int PROMOTION = 3;
+	private static final String[] PAWN_TERM_NAMES = new String[] {"passed", "isolated", "doubled", "promotion"};
+	private static final int NUM_PAWN_TERMS = 4;
+
+	// weights[stage][piece][square]: material plus piece-square value, black already mirrored
+	private final int[][][] weights;
+	private final int[][] pawnWeights; // pawnWeights[stage][term]
+	private final int[] phaseWeights;
+	private final int maxPhase;
+
+	/**
+	 * @param values values[stage][type], the material value of a piece
+	 * @param tables tables[stage][type][square], piece-square values for a white piece (squares as in Squares)
+	 * @param pawnWeights pawnWeights[stage][term] for the terms passed, isolated, doubled (each per pawn), and
+	 *        promotion (per push the most advanced passed pawn is closer than PawnStructure.NO_PASSED_PAWN)
+	 * @param phaseWeights phaseWeights[type], how much a piece counts towards the game phase
+	 */
+	public TaperedEvaluator(int[][] values, int[][][] tables, int[][] pawnWeights, int[] phaseWeights)
+	{
+		this.weights = new int[NUM_STAGES][Position.NUM_COLORS * Position.NUM_PIECE_TYPES][Squares.NUM_SQUARES];
+		for(int stage = 0; stage < NUM_STAGES; ++stage)
+		{
+			for(int type = 0; type < Position.NUM_PIECE_TYPES; ++type)
+			{
+				for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+				{
+					int weight = values[stage][type] + tables[stage][type][square];
+					this.weights[stage][Position.makePiece(Position.WHITE, type)][square] = weight;
+					this.weights[stage][Position.makePiece(Position.BLACK, type)][TaperedEvaluator.mirror(square)] = weight;
+				}
+			}
+		}
+		this.pawnWeights = new int[NUM_STAGES][];
+		for(int stage = 0; stage < NUM_STAGES; ++stage)
+		{
+			this.pawnWeights[stage] = pawnWeights[stage].clone();
+		}
+		this.phaseWeights = phaseWeights.clone();
+
+		// the phase of the starting position: two of each minor piece and rook, one queen, per side
+		this.maxPhase = Position.NUM_COLORS * (2 * phaseWeights[Position.KNIGHT] + 2 * phaseWeights[Position.BISHOP]
+			+ 2 * phaseWeights[Position.ROOK] + phaseWeights[Position.QUEEN]);
+	}
+
+	/**
+	 * The same square seen from the other side of the board (a1 <-> a8)
+	 */
+	private static int mirror(int square) { return square ^ 56; }
+
+	public int getMaxPhase() { return this.maxPhase; }
+
+	/**
+	 * The pawn structure terms for one color at one stage, in centipawns
+	 */
+	private int getPawnStructureValue(long pawnStructure, int color, int stage)
+	{
+		int[] pawnWeights = this.pawnWeights[stage];
+		return pawnWeights[PASSED] * PawnStructure.getNumPassedPawns(pawnStructure, color)
+			+ pawnWeights[ISOLATED] * PawnStructure.getNumIsolatedPawns(pawnStructure, color)
+			+ pawnWeights[DOUBLED] * PawnStructure.getNumDoubledPawns(pawnStructure, color)
+			+ pawnWeights[PROMOTION] * (PawnStructure.NO_PASSED_PAWN - PawnStructure.getPromotionDistance(pawnStructure, color));
+	}
+
+	/**
+	 * How far from the endgame the position is: getMaxPhase() with all pieces on the board, down to 0 when only
+	 * kings and pawns are left. Never more than getMaxPhase(), even after promotions
+	 */
+	public int getPhase(Position position)
+	{
+		int phase = 0;
+		for(int color = 0; color < Position.NUM_COLORS; ++color)
+		{
+			for(int type = 0; type < Position.NUM_PIECE_TYPES; ++type)
+			{
+				phase += this.phaseWeights[type] * position.getNumPieces(color, type);
+			}
+		}
+		return Math.min(phase, this.getMaxPhase());
+	}
+
+	@Override
+	public double getMaxPlayerHeuristicValue(AttackMap attackMap, int maxColor)
+	{
+		return this.getMaxPlayerHeuristicValue(attackMap.getPosition(), maxColor);
+	}
+
+	@Override
+	public double getDeltaMargin() { return TaperedEvaluator.DELTA_MARGIN; }
+	@Override
+	public double getAspirationWindow() { return TaperedEvaluator.ASPIRATION_WINDOW; }
+
+	@Override
+	public double getMaxPlayerHeuristicValue(Position position, int maxColor)
+	{
+		// white's advantage, per stage
+		int midgame = 0;
+		int endgame = 0;
+		for(int piece = 0; piece < Position.NUM_COLORS * Position.NUM_PIECE_TYPES; ++piece)
+		{
+			int[] midgameWeights = this.weights[MIDGAME][piece];
+			int[] endgameWeights = this.weights[ENDGAME][piece];
+			int sign = Position.getColor(piece) == Position.WHITE ? 1 : -1;
+			for(long pieces = position.getPieceBoard(piece); pieces != 0; pieces = Bitboards.removeFirstSquare(pieces))
+			{
+				int square = Bitboards.getFirstSquare(pieces);
+				midgame += sign * midgameWeights[square];
+				endgame += sign * endgameWeights[square];
+			}
+		}
+
+		long pawnStructure = PawnHashTable.getShared().get(position);
+		midgame += this.getPawnStructureValue(pawnStructure, Position.WHITE, MIDGAME)
+			- this.getPawnStructureValue(pawnStructure, Position.BLACK, MIDGAME);
+		endgame += this.getPawnStructureValue(pawnStructure, Position.WHITE, ENDGAME)
+			- this.getPawnStructureValue(pawnStructure, Position.BLACK, ENDGAME);
+
+		int phase = this.getPhase(position);
+		double value = (midgame * (double)phase + endgame * (double)(this.getMaxPhase() - phase))
+			/ (this.getMaxPhase() * CENTIPAWNS_PER_POINT);
+		return maxColor == Position.WHITE ? value : -value;
+	}
+
+	/**
+	 * Load the weights from DEFAULT_WEIGHTS_PATH
+	 */
+	public static TaperedEvaluator load() throws IOException
+	{
+		return TaperedEvaluator.load(Paths.get(DEFAULT_WEIGHTS_PATH));
+	}
+
+	/**
+	 * Load the weights from a file: whitespace separated, '#' starts a comment, made of
+	 *     phase <type> <weight>
+	 *     value <type> <midgame> <endgame>
+	 *     table <type> midgame|endgame <64 numbers, a8..h8 first and a1..h1 last, for a white piece>
+	 *     pawn passed|isolated|doubled|promotion <midgame> <endgame>
+	 * with types king, queen, bishop, knight, rook, pawn. Every type needs its phase, value, and both tables,
+	 * and every pawn structure term its weights.
+	 * @throws IOException if the file cannot be read, or is not in this format (the message says where)
+	 */
+	public static TaperedEvaluator load(Path path) throws IOException
+	{
+		List<String> lines = Files.readAllLines(path);
+		WeightsReader reader = new WeightsReader(path, lines);
+
+		int[][] values = new int[NUM_STAGES][Position.NUM_PIECE_TYPES];
+		int[][][] tables = new int[NUM_STAGES][Position.NUM_PIECE_TYPES][Squares.NUM_SQUARES];
+		int[] phaseWeights = new int[Position.NUM_PIECE_TYPES];
+		boolean[][] isTableRead = new boolean[NUM_STAGES][Position.NUM_PIECE_TYPES];
+		boolean[] isValueRead = new boolean[Position.NUM_PIECE_TYPES];
+		boolean[] isPhaseRead = new boolean[Position.NUM_PIECE_TYPES];
+		int[][] pawnWeights = new int[NUM_STAGES][NUM_PAWN_TERMS];
+		boolean[] isPawnTermRead = new boolean[NUM_PAWN_TERMS];
+
+		for(String keyword = reader.nextToken(); keyword != null; keyword = reader.nextToken())
+		{
+			switch(keyword)
+			{
+				case "phase":
+				{
+					int type = reader.nextName(TYPE_NAMES, "piece type");
+					phaseWeights[type] = reader.nextInt();
+					isPhaseRead[type] = true;
+					break;
+				}
+				case "value":
+				{
+					int type = reader.nextName(TYPE_NAMES, "piece type");
+					values[MIDGAME][type] = reader.nextInt();
+					values[ENDGAME][type] = reader.nextInt();
+					isValueRead[type] = true;
+					break;
+				}
+				case "table":
+				{
+					int type = reader.nextName(TYPE_NAMES, "piece type");
+					int stage = reader.nextName(STAGE_NAMES, "stage");
+					for(int row = 0; row < 8; ++row)
+					{
+						// the file starts at white's far side (rank 8)
+						for(int file = 0; file < 8; ++file)
+						{
+							tables[stage][type][Squares.getSquare(file, 7 - row)] = reader.nextInt();
+						}
+					}
+					isTableRead[stage][type] = true;
+					break;
+				}
+				case "pawn":
+				{
+					int term = reader.nextName(PAWN_TERM_NAMES, "pawn structure term");
+					pawnWeights[MIDGAME][term] = reader.nextInt();
+					pawnWeights[ENDGAME][term] = reader.nextInt();
+					isPawnTermRead[term] = true;
+					break;
+				}
+				default:
+					throw reader.error("unknown keyword '" + keyword + "'");
+			}
+		}
+
+		for(int type = 0; type < Position.NUM_PIECE_TYPES; ++type)
+		{
+			if(!isPhaseRead[type] || !isValueRead[type] || !isTableRead[MIDGAME][type] || !isTableRead[ENDGAME][type])
+			{
+				throw new IOException(path + ": missing phase, value, or table for " + TYPE_NAMES[type]);
+			}
+		}
+		for(int term = 0; term < NUM_PAWN_TERMS; ++term)
+		{
+			if(!isPawnTermRead[term])
+			{
+				throw new IOException(path + ": missing pawn " + PAWN_TERM_NAMES[term]);
+			}
+		}
+		return new TaperedEvaluator(values, tables, pawnWeights, phaseWeights);
+	}
+
+	/**
+	 * Splits a weights file into tokens, keeping track of the line for error messages
+	 */
+	private static class WeightsReader
+        extends Object
+	{
+
+		private final Path path;
+		private final List<String> lines;
+		private int lineIdx;
+		private String[] tokens;
+		private int tokenIdx;
+
+		public WeightsReader(Path path, List<String> lines)
+		{
+			this.path = path;
+			this.lines = lines;
+			this.lineIdx = -1;
+			this.tokens = new String[0];
+			this.tokenIdx = 0;
+		}
+
+		/**
+		 * The next token, or null at the end of the file
+		 */
+		public String nextToken()
+		{
+			while(this.tokenIdx >= this.tokens.length)
+			{
+				this.lineIdx += 1;
+				if(this.lineIdx >= this.lines.size())
+				{
+					return null;
+				}
+				String line = this.lines.get(this.lineIdx);
+				int commentIdx = line.indexOf('#');
+				line = (commentIdx >= 0 ? line.substring(0, commentIdx) : line).trim();
+				this.tokens = line.isEmpty() ? new String[0] : line.split("\\s+");
+				this.tokenIdx = 0;
+			}
+			return this.tokens[this.tokenIdx++];
+		}
+
+		public int nextInt() throws IOException
+		{
+			String token = this.nextToken();
+			if(token == null)
+			{
+				throw this.error("unexpected end of file, expected a number");
+			}
+			try
+			{
+				return Integer.parseInt(token);
+			} catch(NumberFormatException e)
+			{
+				throw this.error("expected a number, got '" + token + "'");
+			}
+		}
+
+		/**
+		 * The index of the next token in names
+		 */
+		public int nextName(String[] names, String what) throws IOException
+		{
+			String token = this.nextToken();
+			for(int nameIdx = 0; token != null && nameIdx < names.length; ++nameIdx)
+			{
+				if(names[nameIdx].equals(token.toLowerCase()))
+				{
+					return nameIdx;
+				}
+			}
+			throw this.error("expected a " + what + ", got '" + token + "'");
+		}
+
+		public IOException error(String message)
+		{
+			return new IOException(this.path + ":" + (this.lineIdx + 1) + ": " + message);
+		}
+
+	}
+
+}
@@ -0,0 +1,138 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Writes records in TraceFormat through a FileChannel. Records are collected in a direct buffer and written
+ * BUFFER_SIZE bytes at a time, so a million-node search costs a few hundred writes of 64KB instead of a
+ * formatted line per node.
+ */
+public class BinaryTraceWriter
+    extends Object
+    implements TraceSink
+{
+
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+
+	private BinaryTraceWriter(FileChannel channel)
+	{
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(BinaryTraceWriter.BUFFER_SIZE).order(TraceFormat.BYTE_ORDER);
+	}
+
+	/**
+	 * Append to the trace at path: a new (or empty) file gets a header, an existing one must already be a trace
+	 * @throws IOException if the file cannot be opened, or is not a trace of this version
+	 */
+	public static BinaryTraceWriter open(Path path) throws IOException
+	{
+		Path directory = path.toAbsolutePath().getParent();
+		if(directory != null)
+		{
+			Files.createDirectories(directory);
+		}
+		if(Files.exists(path) && Files.size(path) > 0)
+		{
+			BinaryTraceWriter.checkHeader(path);
+		}
+
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		BinaryTraceWriter writer = new BinaryTraceWriter(channel);
+		if(channel.size() == 0)
+		{
+			writer.buffer.put(TraceFormat.MAGIC).putInt(TraceFormat.VERSION).putInt(TraceFormat.RECORD_SIZE);
+		} else
+		{
+			// a trace cut short (e.g. the game was killed mid write) keeps only its whole records
+			long numRecordBytes = channel.size() - TraceFormat.HEADER_SIZE;
+			long end = TraceFormat.HEADER_SIZE + numRecordBytes - numRecordBytes % TraceFormat.RECORD_SIZE;
+			channel.truncate(end);
+			channel.position(end);
+		}
+		return writer;
+	}
+
+	/**
+	 * Read and check the header of a trace, leaving the channel right after it
+	 * @throws IOException if it is not a trace this version can read
+	 */
+	public static void readHeader(FileChannel channel, Path path) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(TraceFormat.HEADER_SIZE).order(TraceFormat.BYTE_ORDER);
+		while(header.hasRemaining() && channel.read(header) >= 0) {}
+		header.flip();
+		byte[] magic = new byte[TraceFormat.MAGIC.length];
+		if(header.remaining() == TraceFormat.HEADER_SIZE)
+		{
+			header.get(magic);
+		}
+		if(!Arrays.equals(magic, TraceFormat.MAGIC))
+		{
+			throw new IOException(path + ": not a search trace");
+		}
+		int version = header.getInt();
+		int recordSize = header.getInt();
+		if(version != TraceFormat.VERSION || recordSize != TraceFormat.RECORD_SIZE)
+		{
+			throw new IOException(path + ": trace version " + version + " (record size " + recordSize
+				+ "), expected version " + TraceFormat.VERSION + " (record size " + TraceFormat.RECORD_SIZE + ")");
+		}
+	}
+
+	private static void checkHeader(Path path) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			BinaryTraceWriter.readHeader(channel, path);
+		}
+	}
+
+	@Override
+	public void write(long meta, long nanos) throws IOException
+	{
+		if(this.buffer.remaining() < TraceFormat.RECORD_SIZE)
+		{
+			this.flush();
+		}
+		this.buffer.putLong(meta).putLong(nanos);
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		this.buffer.flip();
+		while(this.buffer.hasRemaining())
+		{
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			this.flush();
+		} finally
+		{
+			this.channel.close();
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The "depth,num_children,runtime_ms" lines instrumentation.MinimaxAgent has always written (runtime truncated
+ * to whole milliseconds, everything else in the record dropped). The header is the caller's job.
+ */
+public class CsvTraceWriter
+    extends Object
+    implements TraceSink
+{
+
+	public static final String HEADER = "depth,num_children,runtime_ms";
+
+	private final BufferedWriter writer;
+	private final StringBuilder line;
+
+	public CsvTraceWriter(BufferedWriter writer)
+	{
+		this.writer = writer;
+		this.line = new StringBuilder();
+	}
+
+	@Override
+	public void write(long meta, long nanos) throws IOException
+	{
+		this.line.setLength(0);
+		this.line.append(TraceFormat.getDepth(meta)).append(',')
+			.append(TraceFormat.getNumChildren(meta)).append(',')
+			.append(nanos / 1000000L);
+		this.writer.append(this.line);
+		this.writer.newLine();
+	}
+
+	@Override
+	public void flush() throws IOException { this.writer.flush(); }
+
+	@Override
+	public void close() throws IOException { this.writer.close(); }
+
+}
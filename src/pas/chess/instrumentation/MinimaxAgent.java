@@ -8,14 +8,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -38,6 +37,8 @@ import edu.bu.chess.utils.Triple;
 
 // JAVA PROJECT IMPORTS
 import src.pas.chess.heuristics.DefaultHeuristics;
+import src.pas.chess.search.SearchScheduler;
+import src.pas.chess.search.SearchStoppedException;
 
 
 public class MinimaxAgent
@@ -51,23 +52,38 @@ public class MinimaxAgent
 
 		private DFSTreeNode rootNode;
 		private final int maxDepth;
-		private BufferedWriter writer;
+		private final TraceRecorder traceRecorder;
 
-		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth, BufferedWriter writer)
+		// the search thread's buffer of traceRecorder, looked up when the search starts (null without a recorder)
+		private TraceRecorder.Buffer traceBuffer;
+
+		// which of its parent's children the next minimaxSearch call is searching, for the trace
+		private int nextChildIndex;
+
+		public MinimaxSearcher(DFSTreeNode rootNode, int maxDepth, TraceRecorder traceRecorder)
 		{
 			this.rootNode = rootNode;
 			this.maxDepth = maxDepth;
-			this.writer = writer;
+			this.traceRecorder = traceRecorder;
+			this.traceBuffer = null;
+			this.nextChildIndex = 0;
 		}
 
 		public DFSTreeNode getRootNode() { return this.rootNode; }
 		public int getMaxDepth() { return this.maxDepth; }
-		public BufferedWriter getWriter() { return this.writer; }
+		public TraceRecorder getTraceRecorder() { return this.traceRecorder; }
 
 		public DFSTreeNode minimaxSearch(DFSTreeNode node, int depth)
 		{
+			// cancelled by the agent after a timeout: unwind instead of finishing a search nobody waits for
+			if(Thread.currentThread().isInterrupted())
+			{
+				throw new SearchStoppedException();
+			}
+
+			int childIndex = this.nextChildIndex;
 			int numChildren = 0;
-			double startTime = System.nanoTime();
+			long startTime = System.nanoTime();
 			DFSTreeNode bestChild = null;
 			if(node.isTerminal()) // terminal state!
 			{
@@ -86,8 +102,10 @@ public class MinimaxAgent
 				if(node.getType() == DFSTreeNodeType.MAX)
 				{
 					bestUtilityValue = Double.NEGATIVE_INFINITY;
+					int childIdx = 0;
 					for(DFSTreeNode child : children)
 					{
+						this.nextChildIndex = childIdx++;
 						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
 						if(child.getMaxPlayerUtilityValue() > bestUtilityValue)
 						{
@@ -99,8 +117,10 @@ public class MinimaxAgent
 				{
 					// min
 					bestUtilityValue = Double.POSITIVE_INFINITY;
+					int childIdx = 0;
 					for(DFSTreeNode child : children)
 					{
+						this.nextChildIndex = childIdx++;
 						child.setMaxPlayerUtilityValue(this.minimaxSearch(child, depth-1).getMaxPlayerUtilityValue());
 						if(child.getMaxPlayerUtilityValue() < bestUtilityValue)
 						{
@@ -110,15 +130,16 @@ public class MinimaxAgent
 					}
 				}
 			}
-			double endTime = System.nanoTime();
+			long endTime = System.nanoTime();
 
-			try
+			// a few array stores: the background writer of the TraceRecorder does the formatting and the I/O
+			if(this.traceBuffer != null)
 			{
-				this.getWriter().write(depth + "," + numChildren + "," + (long)((endTime-startTime)/1000000));
-				this.getWriter().newLine();
-			} catch(IOException e)
-			{
-				e.printStackTrace();
+				// plain minimax searches every child, so no node is ever a TraceFormat.FLAG_CUTOFF
+				int flags = (node.getType() == DFSTreeNodeType.MAX ? TraceFormat.FLAG_MAX : 0)
+					| (node.isTerminal() ? TraceFormat.FLAG_TERMINAL : 0)
+					| (node == this.getRootNode() ? TraceFormat.FLAG_ROOT : 0);
+				this.traceBuffer.record(depth, childIndex, numChildren, flags, endTime - startTime);
 			}
 
 			return bestChild;
@@ -128,6 +149,8 @@ public class MinimaxAgent
 		public Pair<Move, Long> call() throws Exception
 		{
 			Move move = null;
+			this.traceBuffer = this.getTraceRecorder() != null ? this.getTraceRecorder().getBuffer() : null;
+			this.nextChildIndex = 0;
 
 			double startTime = System.nanoTime();
 			move = this.minimaxSearch(this.getRootNode(), this.getMaxDepth()).getMove();
@@ -139,17 +162,25 @@ public class MinimaxAgent
 	}
 
 	private static final long serialVersionUID = -8325987205183244708L;
-	private static final String HEADER = "depth,num_children,runtime_ms";
 	private final int maxDepth;
 	private final long maxPlaytimeInMS;
 	private final PlayerType playerType;
 
 	private Player myPlayer;
 
+	// the thread searches run on, created on the first move and kept for the whole game
+	private SearchScheduler searchScheduler;
+
 	private File outputFile;
 	private FileWriter outputFileWriter;
 	private BufferedWriter outputBufferedWriter;
 
+	// the output file: a CsvTraceWriter around outputBufferedWriter for a .csv path, a BinaryTraceWriter otherwise
+	private TraceSink traceSink;
+
+	// drains the per-node records of every search into traceSink (null if the file could not be opened)
+	private TraceRecorder traceRecorder;
+
 	/**
 	 * The constructor. Please do not modify. This constructor will work for variable-sized program args
 	 * @param playerID
@@ -202,16 +233,25 @@ public class MinimaxAgent
 
 		try
 		{
-			this.outputFileWriter = new FileWriter(this.getOutputFile(), true); // true = append mode
-			this.outputBufferedWriter = new BufferedWriter(this.outputFileWriter);
+			if(TraceFormat.isCsvPath(this.getFilePath()))
+			{
+				this.outputFileWriter = new FileWriter(this.getOutputFile(), true); // true = append mode
+				this.outputBufferedWriter = new BufferedWriter(this.outputFileWriter);
 
-			if(!fileExists)
+				if(!fileExists)
+				{
+					// write header
+					this.getOutputBufferedWriter().write(CsvTraceWriter.HEADER);
+					this.getOutputBufferedWriter().newLine();
+					// this.getOutputFileWriter().write("depth, num_children, runtime_ms\n");
+				}
+				this.traceSink = new CsvTraceWriter(this.getOutputBufferedWriter());
+			} else
 			{
-				// write header
-				this.getOutputBufferedWriter().write(MinimaxAgent.HEADER);
-				this.getOutputBufferedWriter().newLine();
-				// this.getOutputFileWriter().write("depth, num_children, runtime_ms\n");
+				// binary trace (see TraceFormat), appended to if it exists: read it with TraceAnalyzer
+				this.traceSink = BinaryTraceWriter.open(Paths.get(this.getFilePath()));
 			}
+			this.traceRecorder = new TraceRecorder(this.getTraceSink());
 		} catch (IOException e)
 		{
 			System.out.println("MinimaxAgent.MinimaxAgent [ERROR]: error in logging observed execution times to path=" + this.getFilePath());
@@ -233,9 +273,20 @@ public class MinimaxAgent
 	@Override
 	protected Player getPlayer() { return this.myPlayer; }
 
+	private SearchScheduler getSearchScheduler()
+	{
+		if(this.searchScheduler == null)
+		{
+			this.searchScheduler = new SearchScheduler(this.getClass().getSimpleName(), 1);
+		}
+		return this.searchScheduler;
+	}
+
 	private File getOutputFile() { return this.outputFile; }
 	private FileWriter getOutputFileWriter() { return this.outputFileWriter; }
 	private BufferedWriter getOutputBufferedWriter() { return this.outputBufferedWriter; }
+	private TraceSink getTraceSink() { return this.traceSink; }
+	private TraceRecorder getTraceRecorder() { return this.traceRecorder; }
 	
 	/**
 	 * This method is responsible for getting a chess move selected via the minimax algorithm.
@@ -248,16 +299,16 @@ public class MinimaxAgent
         Planner.getPlanner().freeze(this.getPlayer());
 
 		// will run the minimax algorithm in a background thread with a timeout
-		ExecutorService backgroundThreadManager = Executors.newSingleThreadExecutor();
+		SearchScheduler searchScheduler = this.getSearchScheduler();
 
 		// preallocate so we don't spend precious time doing it when we are recording duration
 		Move move = null;
 		long durationInMs = 0;
 		DFSTreeNode rootNode = new DFSTreeNode(Planner.getPlanner().getGame(), this.getPlayer());
-		MinimaxSearcher searcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth(), this.getOutputBufferedWriter()); // this obj will run in the background
+		MinimaxSearcher searcherObject = new MinimaxSearcher(rootNode, this.getMaxDepth(), this.getTraceRecorder()); // this obj will run in the background
 
 		// submit the job
-		Future<Pair<Move, Long> > future = backgroundThreadManager.submit(searcherObject);
+		Future<Pair<Move, Long> > future = searchScheduler.submit(searcherObject);
 
 		try
 		{
@@ -273,6 +324,9 @@ public class MinimaxAgent
 			Streamer.getStreamer(this.getFilePath()).streamMove(move, Planner.getPlanner().getGame());
 		} catch(TimeoutException e)
 		{
+			// the result is of no use any more, do not let the search keep running in the background
+			SearchScheduler.cancel(future);
+
 			// timeout = out of time...get ready to end the game (by subtracting all of the time we had left)
 			durationInMs = this.getMaxPlaytimeInMS();
 		} catch(InterruptedException e)
@@ -376,10 +430,23 @@ public class MinimaxAgent
 	@Override
 	public void terminalStep(StateView state, HistoryView history)
 	{
+		// the game is over, release the search thread
+		if(this.searchScheduler != null)
+		{
+			this.searchScheduler.shutdown();
+			this.searchScheduler = null;
+		}
+
 		try
 		{
-			this.getOutputBufferedWriter().close();
-			this.getOutputFileWriter().close();
+			if(this.getTraceRecorder() != null)
+			{
+				this.getTraceRecorder().close();
+			}
+			if(this.getTraceSink() != null)
+			{
+				this.getTraceSink().close(); // closes outputBufferedWriter (and outputFileWriter) for a CSV
+			}
 		} catch (IOException e)
 		{
 			// TODO Auto-generated catch block
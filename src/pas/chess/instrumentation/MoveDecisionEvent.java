@@ -0,0 +1,58 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A JDK Flight Recorder event for one getChessMove of an agent, spanning the whole decision (search, waiting
+ * for it to stop, and the fallback move if it timed out). Together with SearchIterationEvent it splits a
+ * recording of a game into moves and search phases without any per-node cost: when the event is not enabled in
+ * the recording nothing is filled in or committed.
+ */
+@Name("pas.chess.MoveDecision")
+@Label("Move Decision")
+@Category({"Chess", "Search"})
+@Description("One move chosen by an agent's getChessMove")
+@StackTrace(false)
+public class MoveDecisionEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Agent")
+	public String agent;
+
+	@Label("Player")
+	public String player;
+
+	@Label("Move")
+	public String move;
+
+	@Label("Time Budget")
+	@Description("How long the search was allowed to run")
+	@Timespan(Timespan.MILLISECONDS)
+	public long timeBudget;
+
+	@Label("Time Used")
+	@Description("What was taken off the player's clock")
+	@Timespan(Timespan.MILLISECONDS)
+	public long timeUsed;
+
+	@Label("Timed Out")
+	@Description("The search ran out of its time budget")
+	public boolean timedOut;
+
+	@Label("Depth")
+	@Description("Deepest search depth that completed (0 if none did)")
+	public int depth;
+
+}
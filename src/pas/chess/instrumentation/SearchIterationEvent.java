@@ -0,0 +1,49 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A JDK Flight Recorder event for one completed iteration of iterative deepening in AlphaBetaAgent. The event
+ * spans the iteration (aspiration re-searches included), so its duration is the time the iteration took and it
+ * lines up with the GC pauses and allocations JFR records next to it. Iterations cut short by the time budget
+ * are not committed. Record a game with e.g.
+ *     java -XX:StartFlightRecording=filename=game.jfr,settings=profile ...
+ * and read it with "jfr print --events pas.chess.SearchIteration game.jfr" or JDK Mission Control.
+ */
+@Name("pas.chess.SearchIteration")
+@Label("Search Iteration")
+@Category({"Chess", "Search"})
+@Description("One completed iterative deepening iteration of a move's search")
+@StackTrace(false)
+public class SearchIterationEvent
+    extends jdk.jfr.Event
+{
+
+	@Label("Player")
+	public String player;
+
+	@Label("Depth")
+	public int depth;
+
+	@Label("Score")
+	@Description("Value of the root for the max player")
+	public double score;
+
+	@Label("Nodes")
+	@Description("Nodes the main search spent on this iteration")
+	public long numNodes;
+
+	@Label("Aspiration Re-searches")
+	public int numResearches;
+
+}
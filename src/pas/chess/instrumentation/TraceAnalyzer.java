@@ -0,0 +1,269 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Reads binary search traces (see TraceFormat) offline and prints where the search spent its nodes and its time:
+ *     java -cp "lib/*:." src.pas.chess.instrumentation.TraceAnalyzer <trace> [<trace> ...]
+ * - per remaining depth: nodes, total and mean time (a node's time includes its subtree, so the totals of
+ *   different depths overlap), mean children of the interior nodes, and how many of them cut off
+ * - effective branching factor: for a search of depth d that visited N nodes, the b with 1 + b + ... + b^d = N,
+ *   per root depth (from the mean N) and averaged over every search
+ * - cutoff-at-first-child rate: of the nodes that cut off, how many did so on the first child they searched,
+ *   which is what good move ordering gets
+ * The files are streamed through a fixed buffer, so traces of any size take constant memory. A search stopped
+ * by its time limit never records its root, so its nodes are counted with the next search of the same thread.
+ */
+public class TraceAnalyzer
+    extends Object
+{
+
+	public static final int READ_BUFFER_SIZE = 1 << 20;
+
+	// per remaining depth, grown as deeper nodes show up
+	private long[] numNodes;
+	private long[] totalNanos;
+	private long[] numInteriorNodes;
+	private long[] totalChildren;
+	private long[] numCutoffs;
+
+	// per buffer (search thread) id: nodes since its last root, and its last record (to find a cutoff's last child)
+	private final long[] numNodesSinceRoot;
+	private final long[] lastMeta;
+	private final boolean[] hasLastMeta;
+
+	// searches by the depth of their root: {number of searches, total nodes}
+	private final Map<Integer, long[]> searchesByDepth;
+	private double totalBranchingFactor;
+	private long numBranchingFactors;
+
+	private long numRecords;
+	private long numFirstChildCutoffs;
+
+	public TraceAnalyzer()
+	{
+		this.numNodes = new long[0];
+		this.totalNanos = new long[0];
+		this.numInteriorNodes = new long[0];
+		this.totalChildren = new long[0];
+		this.numCutoffs = new long[0];
+		this.numNodesSinceRoot = new long[TraceFormat.MAX_BUFFER_ID + 1];
+		this.lastMeta = new long[TraceFormat.MAX_BUFFER_ID + 1];
+		this.hasLastMeta = new boolean[TraceFormat.MAX_BUFFER_ID + 1];
+		this.searchesByDepth = new TreeMap<Integer, long[]>();
+		this.totalBranchingFactor = 0.0;
+		this.numBranchingFactors = 0L;
+		this.numRecords = 0L;
+		this.numFirstChildCutoffs = 0L;
+	}
+
+	public long getNumRecords() { return this.numRecords; }
+
+	/**
+	 * Add every record of the trace at path
+	 * @throws IOException if it cannot be read or is not a trace of this version
+	 */
+	public void analyze(Path path) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			BinaryTraceWriter.readHeader(channel, path);
+
+			// a new file is a new game, its threads have nothing to do with the last file's
+			Arrays.fill(this.numNodesSinceRoot, 0L);
+			Arrays.fill(this.hasLastMeta, false);
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(TraceAnalyzer.READ_BUFFER_SIZE).order(TraceFormat.BYTE_ORDER);
+			while(channel.read(buffer) >= 0)
+			{
+				buffer.flip();
+				while(buffer.remaining() >= TraceFormat.RECORD_SIZE)
+				{
+					long meta = buffer.getLong();
+					this.add(meta, buffer.getLong());
+				}
+				buffer.compact();
+			}
+			if(buffer.position() > 0)
+			{
+				System.err.println("TraceAnalyzer.analyze [WARNING]: " + path + " ends in a partial record ("
+					+ buffer.position() + " bytes), ignored it");
+			}
+		}
+	}
+
+	private void add(long meta, long nanos)
+	{
+		int depth = TraceFormat.getDepth(meta);
+		int numChildren = TraceFormat.getNumChildren(meta);
+		int bufferId = TraceFormat.getBufferId(meta);
+
+		++this.numRecords;
+		if(depth >= this.numNodes.length)
+		{
+			this.growTo(depth + 1);
+		}
+		++this.numNodes[depth];
+		this.totalNanos[depth] += nanos;
+		if(numChildren > 0)
+		{
+			++this.numInteriorNodes[depth];
+			this.totalChildren[depth] += numChildren;
+		}
+
+		// records are post-order per buffer: the one right before a cutoff node's is the child it cut off on
+		if(TraceFormat.isCutoff(meta))
+		{
+			++this.numCutoffs[depth];
+			if(this.hasLastMeta[bufferId] && TraceFormat.getChildIndex(this.lastMeta[bufferId]) == 0)
+			{
+				++this.numFirstChildCutoffs;
+			}
+		}
+		this.lastMeta[bufferId] = meta;
+		this.hasLastMeta[bufferId] = true;
+
+		++this.numNodesSinceRoot[bufferId];
+		if(TraceFormat.isRoot(meta))
+		{
+			long numSearchNodes = this.numNodesSinceRoot[bufferId];
+			this.numNodesSinceRoot[bufferId] = 0L;
+			long[] searches = this.searchesByDepth.computeIfAbsent(depth, d -> new long[2]);
+			++searches[0];
+			searches[1] += numSearchNodes;
+			if(depth > 0)
+			{
+				this.totalBranchingFactor += TraceAnalyzer.getEffectiveBranchingFactor(numSearchNodes, depth);
+				++this.numBranchingFactors;
+			}
+		}
+	}
+
+	private void growTo(int length)
+	{
+		this.numNodes = Arrays.copyOf(this.numNodes, length);
+		this.totalNanos = Arrays.copyOf(this.totalNanos, length);
+		this.numInteriorNodes = Arrays.copyOf(this.numInteriorNodes, length);
+		this.totalChildren = Arrays.copyOf(this.totalChildren, length);
+		this.numCutoffs = Arrays.copyOf(this.numCutoffs, length);
+	}
+
+	/**
+	 * The b with 1 + b + b^2 + ... + b^depth = numNodes (bisection, the sum only grows with b)
+	 */
+	public static double getEffectiveBranchingFactor(double numNodes, int depth)
+	{
+		double low = 0.0;
+		double high = Math.max(1.0, numNodes);
+		for(int iteration = 0; iteration < 100 && high - low > 1e-9; ++iteration)
+		{
+			double b = (low + high) / 2.0;
+			double sum = 1.0;
+			double power = 1.0;
+			for(int d = 1; d <= depth && sum < numNodes; ++d)
+			{
+				power *= b;
+				sum += power;
+			}
+			if(sum < numNodes)
+			{
+				low = b;
+			} else
+			{
+				high = b;
+			}
+		}
+		return (low + high) / 2.0;
+	}
+
+	private static double ratio(double numerator, double denominator)
+	{
+		return denominator > 0.0 ? numerator / denominator : 0.0;
+	}
+
+	public void printReport()
+	{
+		System.out.println(this.getNumRecords() + " nodes");
+		System.out.println();
+		System.out.println(String.format("%5s %12s %14s %14s %12s %10s",
+			"depth", "nodes", "total_ms", "mean_us", "mean_kids", "cutoffs"));
+		long totalCutoffs = 0L;
+		for(int depth = this.numNodes.length - 1; depth >= 0; --depth)
+		{
+			if(this.numNodes[depth] == 0)
+			{
+				continue;
+			}
+			totalCutoffs += this.numCutoffs[depth];
+			System.out.println(String.format("%5d %12d %14.3f %14.3f %12.2f %9.1f%%",
+				depth,
+				this.numNodes[depth],
+				this.totalNanos[depth] / 1e6,
+				TraceAnalyzer.ratio(this.totalNanos[depth], this.numNodes[depth]) / 1e3,
+				TraceAnalyzer.ratio(this.totalChildren[depth], this.numInteriorNodes[depth]),
+				100.0 * TraceAnalyzer.ratio(this.numCutoffs[depth], this.numInteriorNodes[depth])));
+		}
+
+		System.out.println();
+		System.out.println(String.format("%5s %12s %14s %14s", "root", "searches", "mean_nodes", "ebf"));
+		for(Map.Entry<Integer, long[]> entry : this.searchesByDepth.entrySet())
+		{
+			double meanNodes = TraceAnalyzer.ratio(entry.getValue()[1], entry.getValue()[0]);
+			System.out.println(String.format("%5d %12d %14.1f %14s",
+				entry.getKey(),
+				entry.getValue()[0],
+				meanNodes,
+				entry.getKey() > 0
+					? String.format("%.3f", TraceAnalyzer.getEffectiveBranchingFactor(meanNodes, entry.getKey()))
+					: "-"));
+		}
+		System.out.println("effective branching factor (mean over searches): "
+			+ (this.numBranchingFactors > 0
+				? String.format("%.3f", this.totalBranchingFactor / this.numBranchingFactors)
+				: "no searches"));
+
+		System.out.println("cutoff at first child: "
+			+ (totalCutoffs > 0
+				? String.format("%.1f%% (%d of %d cutoffs)",
+					100.0 * this.numFirstChildCutoffs / totalCutoffs, this.numFirstChildCutoffs, totalCutoffs)
+				: "no cutoffs"));
+	}
+
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			System.err.println("TraceAnalyzer.main [ERROR]: usage: TraceAnalyzer <trace> [<trace> ...]");
+			System.exit(-1);
+		}
+
+		TraceAnalyzer analyzer = new TraceAnalyzer();
+		for(String arg : args)
+		{
+			try
+			{
+				analyzer.analyze(Paths.get(arg));
+			} catch(IOException e)
+			{
+				System.err.println("TraceAnalyzer.main [ERROR]: could not read trace " + e.getMessage());
+				System.exit(-1);
+			}
+		}
+		analyzer.printReport();
+	}
+
+}
@@ -0,0 +1,74 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The binary search-trace format that BinaryTraceWriter writes and TraceAnalyzer reads. A file is a HEADER_SIZE
+ * byte header (MAGIC, then VERSION and RECORD_SIZE as ints) followed by fixed-width records, all in BYTE_ORDER:
+ *     long meta    bits  0-15 remaining depth, 16-31 child index (among its parent's children, in search order),
+ *                  32-47 number of children, 48-55 flags (FLAG_*), 56-63 buffer (search thread) id
+ *     long nanos   time spent in the node, its whole subtree included
+ * Records are in the order the nodes finished (post-order) within each buffer id, so the record right before a
+ * node's in the same buffer is its last searched child. Records of different buffers may be interleaved.
+ */
+public final class TraceFormat
+    extends Object
+{
+
+	public static final byte[] MAGIC = "PASTRACE".getBytes(StandardCharsets.US_ASCII);
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = TraceFormat.MAGIC.length + 2 * Integer.BYTES;
+	public static final int RECORD_SIZE = 2 * Long.BYTES;
+	public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	public static final int FLAG_MAX = 1;      // a MAX node (DFSTreeNodeType.MAX), MIN otherwise
+	public static final int FLAG_CUTOFF = 2;   // the node stopped searching its children early
+	public static final int FLAG_TERMINAL = 4; // the game is over in this node
+	public static final int FLAG_ROOT = 8;     // the root of a search
+
+	public static final int MAX_FIELD_VALUE = 0xFFFF;
+	public static final int MAX_BUFFER_ID = 0xFF;
+
+	/**
+	 * Traces go to a CSV file (the "depth,num_children,runtime_ms" format the instrumentation always wrote) when
+	 * the path ends in this, and to a binary trace otherwise
+	 */
+	public static final String CSV_EXTENSION = ".csv";
+
+	private TraceFormat() {}
+
+	public static boolean isCsvPath(String path) { return path.toLowerCase().endsWith(TraceFormat.CSV_EXTENSION); }
+
+	/**
+	 * Pack the fields of a record (each clamped to what its bits can hold)
+	 */
+	public static long makeMeta(int depth, int childIndex, int numChildren, int flags, int bufferId)
+	{
+		return TraceFormat.clamp(depth, MAX_FIELD_VALUE)
+			| (TraceFormat.clamp(childIndex, MAX_FIELD_VALUE) << 16)
+			| (TraceFormat.clamp(numChildren, MAX_FIELD_VALUE) << 32)
+			| ((long)(flags & 0xFF) << 48)
+			| (TraceFormat.clamp(bufferId, MAX_BUFFER_ID) << 56);
+	}
+
+	private static long clamp(int value, int max) { return Math.max(0, Math.min(value, max)); }
+
+	public static int getDepth(long meta) { return (int)(meta & MAX_FIELD_VALUE); }
+	public static int getChildIndex(long meta) { return (int)((meta >>> 16) & MAX_FIELD_VALUE); }
+	public static int getNumChildren(long meta) { return (int)((meta >>> 32) & MAX_FIELD_VALUE); }
+	public static int getFlags(long meta) { return (int)((meta >>> 48) & 0xFF); }
+	public static int getBufferId(long meta) { return (int)(meta >>> 56); }
+
+	public static boolean isMax(long meta) { return (TraceFormat.getFlags(meta) & FLAG_MAX) != 0; }
+	public static boolean isCutoff(long meta) { return (TraceFormat.getFlags(meta) & FLAG_CUTOFF) != 0; }
+	public static boolean isTerminal(long meta) { return (TraceFormat.getFlags(meta) & FLAG_TERMINAL) != 0; }
+	public static boolean isRoot(long meta) { return (TraceFormat.getFlags(meta) & FLAG_ROOT) != 0; }
+
+}
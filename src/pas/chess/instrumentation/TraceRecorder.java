@@ -0,0 +1,225 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Records one record (see TraceFormat) per search node without slowing the search down the way writing a line
+ * per node did. Each search thread records into its own preallocated ring buffer of primitives (getBuffer), and
+ * a background thread drains every buffer into a TraceSink: CsvTraceWriter for the "depth,num_children,runtime_ms"
+ * lines instrumentation.MinimaxAgent has always written, BinaryTraceWriter for the full records.
+ *
+ * A Buffer has a single producer (its thread) and a single consumer (the writer thread), so it needs no locks:
+ * the producer publishes a record by moving tail, the writer frees its slots by moving head. If the writer
+ * falls a whole buffer behind, the producer waits for it instead of dropping records (getNumStalls counts how
+ * often), so the output always has every node.
+ */
+public class TraceRecorder
+    extends Object
+{
+
+	public static final int DEFAULT_BUFFER_CAPACITY = 1 << 16;
+
+	// how long the writer sleeps when every buffer is empty
+	private static final long DRAIN_INTERVAL_NANOS = 1000000L;
+
+	/**
+	 * A ring of records, written by one search thread and drained by the writer thread.
+	 * Record i takes two longs: its TraceFormat meta, then nanos.
+	 */
+	public static class Buffer
+	    extends Object
+	{
+		private final TraceRecorder recorder;
+		private final int id;
+		private final long[] records;
+		private final int mask;
+		private final AtomicLong head; // next record the writer reads
+		private final AtomicLong tail; // next record the producer writes
+		private long cachedHead;       // the producer's last look at head, so it reads the atomic only when full
+		private long numStalls;
+
+		private Buffer(TraceRecorder recorder, int id, int capacity)
+		{
+			this.recorder = recorder;
+			this.id = id;
+			this.records = new long[2 * capacity];
+			this.mask = capacity - 1;
+			this.head = new AtomicLong(0L);
+			this.tail = new AtomicLong(0L);
+			this.cachedHead = 0L;
+			this.numStalls = 0L;
+		}
+
+		public int getId() { return this.id; }
+		public int getCapacity() { return this.mask + 1; }
+
+		/**
+		 * How many times this buffer was full and record had to wait for the writer (only read it from the
+		 * buffer's own thread)
+		 */
+		public long getNumStalls() { return this.numStalls; }
+
+		/**
+		 * @param depth remaining depth of the node
+		 * @param childIndex which of its parent's children the node is (0 for the first one searched)
+		 * @param numChildren
+		 * @param flags TraceFormat.FLAG_* of the node
+		 * @param nanos time spent in the node, subtree included
+		 */
+		public void record(int depth, int childIndex, int numChildren, int flags, long nanos)
+		{
+			long tail = this.tail.get();
+			if(tail - this.cachedHead > this.mask)
+			{
+				this.cachedHead = this.head.get();
+				if(tail - this.cachedHead > this.mask)
+				{
+					++this.numStalls;
+					this.recorder.wakeWriter();
+					while(tail - (this.cachedHead = this.head.get()) > this.mask)
+					{
+						Thread.yield();
+					}
+				}
+			}
+			int recordIdx = ((int)tail & this.mask) << 1;
+			this.records[recordIdx] = TraceFormat.makeMeta(depth, childIndex, numChildren, flags, this.id);
+			this.records[recordIdx + 1] = nanos;
+			this.tail.lazySet(tail + 1);
+		}
+
+		/**
+		 * Write out every record published so far (writer thread only)
+		 * @return how many records were drained
+		 */
+		private int drain(TraceSink sink) throws IOException
+		{
+			long head = this.head.get();
+			long tail = this.tail.get();
+			for(long recordNumber = head; recordNumber < tail; ++recordNumber)
+			{
+				int recordIdx = ((int)recordNumber & this.mask) << 1;
+				sink.write(this.records[recordIdx], this.records[recordIdx + 1]);
+			}
+			this.head.lazySet(tail);
+			return (int)(tail - head);
+		}
+	}
+
+	private final TraceSink sink;
+	private final int bufferCapacity;
+	private final List<Buffer> buffers;
+	private final ThreadLocal<Buffer> threadBuffers;
+	private final Thread writerThread;
+	private volatile boolean running;
+	private IOException writeException;
+
+	/**
+	 * Start the writer thread
+	 * @param sink where the records go, the caller still owns it (and closes it after close())
+	 * @param bufferCapacity records per search thread, rounded down to a power of 2
+	 */
+	public TraceRecorder(TraceSink sink, int bufferCapacity)
+	{
+		this.sink = sink;
+		this.bufferCapacity = Integer.highestOneBit(Math.max(1, bufferCapacity));
+		this.buffers = new CopyOnWriteArrayList<Buffer>();
+		this.threadBuffers = ThreadLocal.withInitial(this::createBuffer);
+		this.running = true;
+		this.writeException = null;
+		this.writerThread = new Thread(this::runWriter, "TraceRecorder-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	public TraceRecorder(TraceSink sink)
+	{
+		this(sink, TraceRecorder.DEFAULT_BUFFER_CAPACITY);
+	}
+
+	/**
+	 * The calling thread's buffer. Look it up once per search and keep it, record(...) is the cheap part
+	 */
+	public Buffer getBuffer() { return this.threadBuffers.get(); }
+
+	private synchronized Buffer createBuffer()
+	{
+		// ids only tell the threads' records apart, past TraceFormat.MAX_BUFFER_ID threads they are shared
+		Buffer buffer = new Buffer(this, Math.min(this.buffers.size(), TraceFormat.MAX_BUFFER_ID), this.bufferCapacity);
+		this.buffers.add(buffer);
+		return buffer;
+	}
+
+	private void wakeWriter()
+	{
+		LockSupport.unpark(this.writerThread);
+	}
+
+	private int drainAll()
+	{
+		int numDrained = 0;
+		for(Buffer buffer : this.buffers)
+		{
+			try
+			{
+				numDrained += buffer.drain(this.sink);
+			} catch(IOException e)
+			{
+				// keep draining (so no search ever waits on a dead writer) but only report the first failure
+				if(this.writeException == null)
+				{
+					this.writeException = e;
+					e.printStackTrace();
+				}
+				buffer.head.lazySet(buffer.tail.get());
+			}
+		}
+		return numDrained;
+	}
+
+	private void runWriter()
+	{
+		while(this.running)
+		{
+			if(this.drainAll() == 0)
+			{
+				LockSupport.parkNanos(this, TraceRecorder.DRAIN_INTERVAL_NANOS);
+			}
+		}
+		this.drainAll();
+	}
+
+	/**
+	 * Stop the writer thread once it has written every record published so far, and flush the sink.
+	 * Call it after the searches are done (records published after it starts may not be written)
+	 * @throws IOException the first error writing any record, or flushing
+	 */
+	public void close() throws IOException
+	{
+		this.running = false;
+		this.wakeWriter();
+		try
+		{
+			this.writerThread.join();
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if(this.writeException != null)
+		{
+			throw this.writeException;
+		}
+		this.sink.flush();
+	}
+
+}
@@ -0,0 +1,27 @@
+package src.pas.chess.instrumentation;
+
+
+// SYSTEM IMPORTS
+import java.io.IOException;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Where TraceRecorder's writer thread puts the records it drains (only ever called from that thread)
+ */
+public interface TraceSink
+{
+
+	/**
+	 * @param meta the record's fields, packed as in TraceFormat.makeMeta
+	 * @param nanos time spent in the node
+	 */
+	public void write(long meta, long nanos) throws IOException;
+
+	public void flush() throws IOException;
+
+	public void close() throws IOException;
+
+}
@@ -0,0 +1,212 @@
+package src.pas.chess.moveorder;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Hands out the moves of one node one at a time, in the order CustomMoveOrderer would sort the whole list
+ * into, but only doing the work for the moves that are actually asked for. Most nodes of an alpha-beta search
+ * are cut off after their first move or two, so the moves are produced in stages:
+ *     1. the hash move, checked to be playable here, before any move is generated at all
+ *     2. captures and promotions are generated, and those that do not lose material are tried (MVV-LVA)
+ *     3. the killers of this ply, again checked to be playable here instead of generating anything
+ *     4. the captures that lose material
+ *     5. and only now the quiet moves are generated and ordered (checks, history)
+ *
+ * Moves are pseudo-legal: the caller finds out whether a move leaves its own king attacked when it plays it,
+ * so the legality of moves that are never reached is never checked either.
+ * A picker belongs to one ply of one search, and is set up for every node with reset.
+ */
+public class MovePicker
+    extends Object
+{
+
+	private static final int HASH_MOVE = 0;
+	private static final int GENERATE_CAPTURES = 1;
+	private static final int GOOD_CAPTURES = 2;
+	private static final int KILLERS = 3;
+	private static final int LOSING_CAPTURES = 4;
+	private static final int GENERATE_QUIETS = 5;
+	private static final int QUIETS = 6;
+	private static final int DONE = 7;
+
+	private final CustomMoveOrderer moveOrderer;
+	private final int[] moves;
+	private final int[] scores;
+	private final int[] killers;
+
+	private AttackMap attackMap;
+	private int hashMove;
+	private int ply;
+	private int stage;
+	private int numMoves;
+	private int moveIdx;
+	private int killerIdx;
+
+	/**
+	 * @param moveOrderer where the killers and history scores come from
+	 */
+	public MovePicker(CustomMoveOrderer moveOrderer)
+	{
+		this.moveOrderer = moveOrderer;
+		this.moves = new int[Moves.MAX_MOVES];
+		this.scores = new int[Moves.MAX_MOVES];
+		this.killers = new int[CustomMoveOrderer.NUM_KILLERS];
+		this.attackMap = null;
+		this.hashMove = Moves.NO_MOVE;
+		this.ply = 0;
+		this.stage = DONE;
+		this.numMoves = 0;
+		this.moveIdx = 0;
+		this.killerIdx = 0;
+	}
+
+	public CustomMoveOrderer getMoveOrderer() { return this.moveOrderer; }
+	public AttackMap getAttackMap() { return this.attackMap; }
+	public Position getPosition() { return this.getAttackMap().getPosition(); }
+	public int getHashMove() { return this.hashMove; }
+	public int getPly() { return this.ply; }
+
+	/**
+	 * Did the last move next returned come from the generated quiet moves (so not the hash move or a killer)?
+	 * Those are the moves the search expects least from
+	 */
+	public boolean isPickingQuiets() { return this.stage == QUIETS; }
+
+	/**
+	 * Start handing out the moves of a new node
+	 * @param attackMap attached to the position of the node, which must not change between calls to next
+	 *        (except for moves that are made and unmade again)
+	 * @param hashMove the move to try first (e.g. from the transposition table), or Moves.NO_MOVE
+	 * @param ply distance from the root, for the killers
+	 */
+	public void reset(AttackMap attackMap, int hashMove, int ply)
+	{
+		this.attackMap = attackMap;
+		this.hashMove = hashMove;
+		this.ply = ply;
+		this.stage = HASH_MOVE;
+		this.numMoves = 0;
+		this.moveIdx = 0;
+		this.killerIdx = 0;
+		for(int killerIdx = 0; killerIdx < CustomMoveOrderer.NUM_KILLERS; ++killerIdx)
+		{
+			this.killers[killerIdx] = this.getMoveOrderer().getKiller(ply, killerIdx);
+		}
+	}
+
+	/**
+	 * Was this move already handed out before its stage was generated?
+	 */
+	private boolean isPickedEarly(int move)
+	{
+		if(move == this.getHashMove())
+		{
+			return true;
+		}
+		for(int killer : this.killers)
+		{
+			if(move == killer)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drop the moves that were already handed out from moves[0..numMoves)
+	 */
+	private void removePickedEarly()
+	{
+		int numKept = 0;
+		for(int moveIdx = 0; moveIdx < this.numMoves; ++moveIdx)
+		{
+			if(!this.isPickedEarly(this.moves[moveIdx]))
+			{
+				this.moves[numKept++] = this.moves[moveIdx];
+			}
+		}
+		this.numMoves = numKept;
+	}
+
+	/**
+	 * The next (pseudo-legal) move to search, or Moves.NO_MOVE once every move has been handed out
+	 */
+	public int next()
+	{
+		Position position = this.getPosition();
+		while(true)
+		{
+			switch(this.stage)
+			{
+				case HASH_MOVE:
+					this.stage = GENERATE_CAPTURES;
+					if(MoveGenerator.isPseudoLegal(position, this.getHashMove()))
+					{
+						return this.getHashMove();
+					}
+					break;
+				case GENERATE_CAPTURES:
+					// killers are quiet moves, so only the hash move can be among the captures
+					this.numMoves = MoveGenerator.generatePseudoLegalCaptures(position, this.moves);
+					this.removePickedEarly();
+					CustomMoveOrderer.order(this.getAttackMap(), this.moves, this.numMoves, this.scores, Moves.NO_MOVE);
+					this.moveIdx = 0;
+					this.stage = GOOD_CAPTURES;
+					break;
+				case GOOD_CAPTURES:
+					if(this.moveIdx < this.numMoves && CustomMoveOrderer.isScoredAboveKillers(this.scores[this.moveIdx]))
+					{
+						return this.moves[this.moveIdx++];
+					}
+					this.stage = KILLERS;
+					break;
+				case KILLERS:
+					while(this.killerIdx < this.killers.length)
+					{
+						int killer = this.killers[this.killerIdx++];
+						if(killer != this.getHashMove() && MoveGenerator.isPseudoLegal(position, killer))
+						{
+							return killer;
+						}
+					}
+					this.stage = LOSING_CAPTURES;
+					break;
+				case LOSING_CAPTURES:
+					if(this.moveIdx < this.numMoves)
+					{
+						return this.moves[this.moveIdx++];
+					}
+					this.stage = GENERATE_QUIETS;
+					break;
+				case GENERATE_QUIETS:
+					this.numMoves = MoveGenerator.generatePseudoLegalQuiets(position, this.moves);
+					this.removePickedEarly();
+					this.getMoveOrderer().order(this.getAttackMap(), this.moves, this.numMoves, this.scores, Moves.NO_MOVE,
+						this.getPly());
+					this.moveIdx = 0;
+					this.stage = QUIETS;
+					break;
+				case QUIETS:
+					if(this.moveIdx < this.numMoves)
+					{
+						return this.moves[this.moveIdx++];
+					}
+					this.stage = DONE;
+					break;
+				default:
+					return Moves.NO_MOVE;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+package src.pas.chess.moveorder;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Bitboards;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Static exchange evaluation: what a move wins or loses in material (Piece.getPointValue points) once both
+ * sides have captured back and forth on the square it lands on, each always recapturing with its least
+ * valuable piece and each free to stop capturing whenever continuing would lose more. Sliders behind the
+ * pieces that capture (x-rays) join in as the square gets uncovered. Pins and checks are ignored.
+ *
+ * Promotions happen in place in this game, so for a promotion the square fought over is the pawn's own
+ * square, now holding the new piece.
+ */
+public class StaticExchangeEvaluator
+    extends Object
+{
+
+	private static final int[] POINT_VALUES = new int[Position.NUM_PIECE_TYPES];
+	static
+	{
+		for(PieceType pieceType : PieceType.values())
+		{
+			POINT_VALUES[pieceType.ordinal()] = Piece.getPointValue(pieceType);
+		}
+	}
+
+	// least valuable first, the order in which each side brings in its attackers
+	private static final int[] ATTACKER_ORDER = new int[] {Position.PAWN, Position.KNIGHT, Position.BISHOP,
+		Position.ROOK, Position.QUEEN, Position.KING};
+
+	// an exchange can never be longer than the number of pieces on the board
+	private static final int MAX_EXCHANGE_LENGTH = 32 + 1;
+
+	// scratch space for evaluate, one per thread so that ordering moves does not allocate
+	private static final ThreadLocal<int[]> GAINS = ThreadLocal.withInitial(() -> new int[MAX_EXCHANGE_LENGTH]);
+
+	public static int getPointValue(int type) { return POINT_VALUES[type]; }
+
+	/**
+	 * The material the side to move gains by playing move and then exchanging on its square as well as both
+	 * sides can (negative when it loses material). A quiet move scores 0 unless the moved piece hangs.
+	 */
+	public static int evaluate(Position position, int move)
+	{
+		int from = Moves.getFrom(move);
+		int square;
+		int pieceOnSquare; // type of the piece standing on square once move is played
+		int firstGain;
+		long occupancy = position.getOccupancy();
+		if(Moves.isPromotion(move))
+		{
+			square = from;
+			pieceOnSquare = Moves.getPromotionType(move);
+			firstGain = POINT_VALUES[pieceOnSquare] - POINT_VALUES[Position.PAWN];
+		} else
+		{
+			square = Moves.getTo(move);
+			pieceOnSquare = Position.getType(position.getPiece(from));
+			firstGain = position.isEmpty(square) ? 0 : POINT_VALUES[Position.getType(position.getPiece(square))];
+			occupancy ^= Bitboards.getSquareBit(from);
+		}
+
+		// gains[i]: what the side making capture i has won so far, if the other side stops right after it
+		int[] gains = GAINS.get();
+		gains[0] = firstGain;
+		int numCaptures = 1;
+		int color = Position.getOtherColor(position.getSideToMove());
+		while(numCaptures < MAX_EXCHANGE_LENGTH)
+		{
+			// the pieces already used are gone from occupancy, which also uncovers the sliders behind them
+			long attackers = position.getAttackers(square, color, occupancy) & occupancy;
+			if(attackers == 0)
+			{
+				break;
+			}
+
+			int attackerSquare = -1;
+			int attackerType = -1;
+			for(int type : ATTACKER_ORDER)
+			{
+				long typeAttackers = attackers & position.getPieceBoard(color, type);
+				if(typeAttackers != 0)
+				{
+					attackerSquare = Bitboards.getFirstSquare(typeAttackers);
+					attackerType = type;
+					break;
+				}
+			}
+
+			gains[numCaptures] = POINT_VALUES[pieceOnSquare] - gains[numCaptures - 1];
+			numCaptures += 1;
+			occupancy ^= Bitboards.getSquareBit(attackerSquare);
+			pieceOnSquare = attackerType;
+			color = Position.getOtherColor(color);
+		}
+
+		// going backwards, each side only makes its capture if that beats stopping before it
+		for(int captureIdx = numCaptures - 1; captureIdx > 0; --captureIdx)
+		{
+			gains[captureIdx - 1] = -Math.max(-gains[captureIdx - 1], gains[captureIdx]);
+		}
+		return gains[0];
+	}
+
+	/**
+	 * Does this capture lose material once the exchange is played out? Never true when the victim is worth
+	 * at least as much as the capturing piece, which is checked first since it needs no exchange at all
+	 */
+	public static boolean isLosingCapture(Position position, int move)
+	{
+		if(!Moves.isCapture(move))
+		{
+			return false;
+		}
+		int victimValue = POINT_VALUES[Position.getType(position.getPiece(Moves.getTo(move)))];
+		int attackerValue = POINT_VALUES[Position.getType(position.getPiece(Moves.getFrom(move)))];
+		return victimValue < attackerValue && StaticExchangeEvaluator.evaluate(position, move) < 0;
+	}
+
+}
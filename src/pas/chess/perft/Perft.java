@@ -0,0 +1,383 @@
+package src.pas.chess.perft;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Game;
+import edu.bu.chess.search.DFSTreeNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Fen;
+import src.pas.chess.position.GameConverter;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Perft: count the leaves of the full legal move tree of a position to a fixed depth. The counts check move
+ * generation (MoveGenerator plus Position.makeMove/unmakeMove) against known values, and the time they take
+ * measures its raw speed, so any change to the board representation can be checked and benchmarked headless,
+ * without SEPIA, a Game, or the Planner:
+ *     java -cp "lib/*:." src.pas.chess.perft.Perft suite [<path>] [<maxDepth>]
+ *     java -cp "lib/*:." src.pas.chess.perft.Perft tree [<path>] [<maxDepth>]
+ *     java -cp "lib/*:." src.pas.chess.perft.Perft perft <depth> <fen>
+ *     java -cp "lib/*:." src.pas.chess.perft.Perft divide <depth> <fen>
+ * suite runs every position of a suite file (DEFAULT_SUITE_PATH by default) to every depth it has a count for
+ * (up to maxDepth) and fails if any count is off. tree checks the same counts, and times them, through the
+ * library instead: DFSTreeNode.getChildren() on a Game made by GameConverter.toGame, down to the depth the
+ * suite says the library's move generation can be trusted to (its "tree" field). So the suite's counts are
+ * checked against both representations, and the two timings compare them. perft prints the count and
+ * nodes/second for depths 1 to depth. divide prints the count below each root move, to find the move a wrong
+ * count comes from.
+ *
+ * The counts follow this game's rules (see MoveGenerator), not textbook chess, so the usual published perft
+ * numbers only hold for positions and depths where en passant and promotions cannot come up.
+ */
+public class Perft
+    extends Object
+{
+
+	public static final String DEFAULT_SUITE_PATH = "data/pas/chess/perft/perft.suite";
+
+	/**
+	 * One position of a suite file, with the expected count for each depth (expectedNodes[depth], -1 if unknown)
+	 * and the deepest depth the library's move generation gives the right count for (0 if it was never checked)
+	 */
+	public static class SuiteEntry
+	    extends Object
+	{
+		private final String fen;
+		private final long[] expectedNodes;
+		private final int maxTreeDepth;
+
+		public SuiteEntry(String fen, long[] expectedNodes, int maxTreeDepth)
+		{
+			this.fen = fen;
+			this.expectedNodes = expectedNodes;
+			this.maxTreeDepth = maxTreeDepth;
+		}
+
+		public String getFen() { return this.fen; }
+		public int getMaxDepth() { return this.expectedNodes.length - 1; }
+		public long getExpectedNodes(int depth) { return this.expectedNodes[depth]; }
+		public int getMaxTreeDepth() { return this.maxTreeDepth; }
+	}
+
+	private final Position position;
+	private final int[][] moveBuffers; // one per ply so that recursion never allocates
+
+	public Perft(Position position, int maxDepth)
+	{
+		this.position = position;
+		this.moveBuffers = new int[Math.max(1, maxDepth)][Moves.MAX_MOVES];
+	}
+
+	public Position getPosition() { return this.position; }
+
+	/**
+	 * The number of legal move sequences of length depth from the position
+	 */
+	public long perft(int depth)
+	{
+		return depth <= 0 ? 1L : this.perft(depth, 0);
+	}
+
+	private long perft(int depth, int ply)
+	{
+		int[] moves = this.moveBuffers[ply];
+		int numMoves = MoveGenerator.generatePseudoLegalMoves(this.position, moves);
+		int color = this.position.getSideToMove();
+		long numNodes = 0L;
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			this.position.makeMove(moves[moveIdx]);
+			if(!this.position.isInCheck(color))
+			{
+				// bulk count the last ply: a legal move is a leaf, no need to generate below it
+				numNodes += depth == 1 ? 1L : this.perft(depth - 1, ply + 1);
+			}
+			this.position.unmakeMove();
+		}
+		return numNodes;
+	}
+
+	/**
+	 * perft(depth - 1) below each legal root move
+	 * @param rootMoves filled with the legal root moves (at least Moves.MAX_MOVES long)
+	 * @return the counts, in the same order as rootMoves (the array's length is the number of root moves)
+	 */
+	public long[] divide(int depth, int[] rootMoves)
+	{
+		int numMoves = MoveGenerator.generateLegalMoves(this.position, rootMoves);
+		long[] numNodes = new long[numMoves];
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			this.position.makeMove(rootMoves[moveIdx]);
+			numNodes[moveIdx] = depth <= 1 ? 1L : this.perft(depth - 1, 0);
+			this.position.unmakeMove();
+		}
+		return numNodes;
+	}
+
+	/**
+	 * The same count through the library: DFSTreeNode.getChildren() (Game.getAllMoves and applyMove) at every
+	 * node, which is what the minimax agents search with
+	 */
+	public static long treePerft(DFSTreeNode node, int depth)
+	{
+		if(depth <= 0)
+		{
+			return 1L;
+		}
+		if(depth == 1)
+		{
+			// bulk count the last ply: getChildren() is one child per getAllMoves move (none if terminal), this
+			// skips applying every move just to count it
+			return node.isTerminal() ? 0L : node.getGame().getAllMoves(node.getGame().getCurrentPlayer()).size();
+		}
+		List<DFSTreeNode> children = node.getChildren();
+		long numNodes = 0L;
+		for(DFSTreeNode child : children)
+		{
+			numNodes += Perft.treePerft(child, depth - 1);
+		}
+		return numNodes;
+	}
+
+	/**
+	 * Read a suite file: one position per line, as a FEN followed by ";D<depth> <count>" fields and optionally a
+	 * ";tree <depth>" field (how deep the tree mode may check the counts), e.g.
+	 *     rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 ;D1 20 ;D2 400 ;tree 2
+	 * Blank lines and lines starting with # are skipped.
+	 * @throws IOException if the file cannot be read or a line is malformed ("path:line: message")
+	 */
+	public static List<SuiteEntry> readSuite(Path path) throws IOException
+	{
+		List<SuiteEntry> entries = new ArrayList<SuiteEntry>();
+		try(BufferedReader reader = Files.newBufferedReader(path))
+		{
+			int lineNumber = 0;
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				++lineNumber;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith("#"))
+				{
+					continue;
+				}
+
+				String[] fields = line.split(";");
+				long[] expectedNodes = new long[0];
+				int maxTreeDepth = 0;
+				for(int fieldIdx = 1; fieldIdx < fields.length; ++fieldIdx)
+				{
+					String[] depthAndCount = fields[fieldIdx].trim().split("\\s+");
+					if(depthAndCount[0].equals("tree"))
+					{
+						try
+						{
+							maxTreeDepth = depthAndCount.length == 2 ? Integer.parseInt(depthAndCount[1]) : -1;
+						} catch(NumberFormatException e)
+						{
+							maxTreeDepth = -1;
+						}
+						if(maxTreeDepth < 0)
+						{
+							throw new IOException(path + ":" + lineNumber + ": expected \";tree <depth>\", got \""
+								+ fields[fieldIdx].trim() + "\"");
+						}
+						continue;
+					}
+					int depth;
+					long count;
+					try
+					{
+						if(depthAndCount.length != 2 || !depthAndCount[0].startsWith("D"))
+						{
+							throw new NumberFormatException();
+						}
+						depth = Integer.parseInt(depthAndCount[0].substring(1));
+						count = Long.parseLong(depthAndCount[1]);
+					} catch(NumberFormatException e)
+					{
+						throw new IOException(path + ":" + lineNumber + ": expected \";D<depth> <count>\", got \""
+							+ fields[fieldIdx].trim() + "\"");
+					}
+					if(depth < 1 || count < 0)
+					{
+						throw new IOException(path + ":" + lineNumber + ": bad depth or count \"" + fields[fieldIdx].trim() + "\"");
+					}
+					if(depth >= expectedNodes.length)
+					{
+						int oldLength = expectedNodes.length;
+						expectedNodes = Arrays.copyOf(expectedNodes, depth + 1);
+						Arrays.fill(expectedNodes, oldLength, expectedNodes.length, -1L);
+					}
+					expectedNodes[depth] = count;
+				}
+				if(expectedNodes.length == 0)
+				{
+					throw new IOException(path + ":" + lineNumber + ": no \";D<depth> <count>\" fields");
+				}
+
+				try
+				{
+					Fen.toPosition(fields[0]);
+				} catch(IllegalArgumentException e)
+				{
+					throw new IOException(path + ":" + lineNumber + ": " + e.getMessage());
+				}
+				entries.add(new SuiteEntry(fields[0].trim(), expectedNodes, maxTreeDepth));
+			}
+		}
+		return entries;
+	}
+
+	private static String formatRate(long numNodes, long nanos)
+	{
+		return String.format("%d nodes in %.1f ms (%.0f nodes/s)", numNodes, nanos / 1e6, numNodes * 1e9 / Math.max(1L, nanos));
+	}
+
+	/**
+	 * @param throughTree count with treePerft (only to each entry's maxTreeDepth) instead of perft
+	 * @return whether every count matched
+	 */
+	private static boolean runSuite(List<SuiteEntry> entries, int maxDepth, boolean throughTree)
+	{
+		boolean allPassed = true;
+		long totalNodes = 0L;
+		long totalNanos = 0L;
+		for(SuiteEntry entry : entries)
+		{
+			int depthLimit = Math.min(maxDepth, throughTree
+				? Math.min(entry.getMaxTreeDepth(), entry.getMaxDepth())
+				: entry.getMaxDepth());
+			if(depthLimit < 1)
+			{
+				continue;
+			}
+			System.out.println(entry.getFen());
+			Position position = Fen.toPosition(entry.getFen());
+			Perft perft = throughTree ? null : new Perft(position, depthLimit);
+			Game game = throughTree ? GameConverter.toGame(position) : null;
+			DFSTreeNode root = throughTree ? new DFSTreeNode(game, game.getCurrentPlayer()) : null;
+			for(int depth = 1; depth <= depthLimit; ++depth)
+			{
+				long expectedNodes = entry.getExpectedNodes(depth);
+				if(expectedNodes < 0)
+				{
+					continue;
+				}
+				long startNanos = System.nanoTime();
+				long numNodes = throughTree ? Perft.treePerft(root, depth) : perft.perft(depth);
+				long nanos = System.nanoTime() - startNanos;
+				totalNodes += numNodes;
+				totalNanos += nanos;
+
+				boolean passed = numNodes == expectedNodes;
+				allPassed &= passed;
+				System.out.println("    depth " + depth + ": " + Perft.formatRate(numNodes, nanos)
+					+ (passed ? "" : "  FAILED, expected " + expectedNodes));
+			}
+		}
+		System.out.println((allPassed ? "passed: " : "FAILED: ") + Perft.formatRate(totalNodes, totalNanos));
+		return allPassed;
+	}
+
+	private static void printUsageAndExit()
+	{
+		System.err.println("Perft.main [ERROR]: usage: Perft suite [<path>] [<maxDepth>]");
+		System.err.println("                           Perft tree [<path>] [<maxDepth>]");
+		System.err.println("                           Perft perft <depth> <fen>");
+		System.err.println("                           Perft divide <depth> <fen>");
+		System.exit(-1);
+	}
+
+	public static void main(String[] args)
+	{
+		if(args.length < 1)
+		{
+			Perft.printUsageAndExit();
+		}
+		// Bitboards works out its magics the first time it is used, keep that out of the first timing
+		new Perft(Fen.toPosition(Fen.START_POSITION), 1).perft(1);
+
+		if(args[0].equals("suite") || args[0].equals("tree"))
+		{
+			Path path = Paths.get(args.length > 1 ? args[1] : Perft.DEFAULT_SUITE_PATH);
+			int maxDepth = Integer.MAX_VALUE;
+			List<SuiteEntry> entries = null;
+			try
+			{
+				if(args.length > 2)
+				{
+					maxDepth = Integer.parseInt(args[2]);
+				}
+				entries = Perft.readSuite(path);
+			} catch(NumberFormatException e)
+			{
+				Perft.printUsageAndExit();
+			} catch(IOException e)
+			{
+				System.err.println("Perft.main [ERROR]: could not read suite " + e.getMessage());
+				System.exit(-1);
+			}
+			System.exit(Perft.runSuite(entries, maxDepth, args[0].equals("tree")) ? 0 : 1);
+		}
+
+		if(args.length < 3 || !(args[0].equals("perft") || args[0].equals("divide")))
+		{
+			Perft.printUsageAndExit();
+		}
+		int maxDepth = 0;
+		Position position = null;
+		try
+		{
+			maxDepth = Integer.parseInt(args[1]);
+			position = Fen.toPosition(String.join(" ", Arrays.copyOfRange(args, 2, args.length)));
+		} catch(NumberFormatException e)
+		{
+			Perft.printUsageAndExit();
+		} catch(IllegalArgumentException e)
+		{
+			System.err.println("Perft.main [ERROR]: " + e.getMessage());
+			System.exit(-1);
+		}
+
+		Perft perft = new Perft(position, maxDepth);
+		if(args[0].equals("perft"))
+		{
+			for(int depth = 1; depth <= maxDepth; ++depth)
+			{
+				long startNanos = System.nanoTime();
+				long numNodes = perft.perft(depth);
+				System.out.println("depth " + depth + ": " + Perft.formatRate(numNodes, System.nanoTime() - startNanos));
+			}
+		} else
+		{
+			int[] rootMoves = new int[Moves.MAX_MOVES];
+			long startNanos = System.nanoTime();
+			long[] numNodes = perft.divide(maxDepth, rootMoves);
+			long nanos = System.nanoTime() - startNanos;
+			long totalNodes = 0L;
+			for(int moveIdx = 0; moveIdx < numNodes.length; ++moveIdx)
+			{
+				System.out.println(Moves.toString(rootMoves[moveIdx]) + ": " + numNodes[moveIdx]);
+				totalNodes += numNodes[moveIdx];
+			}
+			System.out.println(numNodes.length + " moves, " + Perft.formatRate(totalNodes, nanos));
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Everything the heuristic and the move orderer want to know about the attacks in one position, computed at
+ * most once per position instead of once per question:
+ *     - the squares each piece attacks, the union per color, and how many (piece, attacked enemy) pairs each
+ *       color has (what the heuristic calls capture targets)
+ *     - for the side to move: the squares a piece of each type would give check from, and the pieces that
+ *       would uncover a check by moving off their line, so that "does this move give check" needs no makeMove
+ *
+ * A map is attached to a Position with setPosition and fills itself in lazily: each half is built the first
+ * time it is asked for, and is rebuilt only when the position's key changes. The search keeps one map per ply,
+ * so a node that is left and re-entered (e.g. the same root searched again) does not pay twice.
+ */
+public class AttackMap
+    extends Object
+{
+
+	private Position position;
+
+	// attacks half
+	private boolean hasAttacks;
+	private long attacksKey;
+	private final long[] attacksFrom;
+	private final long[] attackedSquares;
+	private final int[] numCaptureTargets;
+
+	// checks half, always for the side to move giving check to the other king
+	private boolean hasChecks;
+	private long checksKey;
+	private final long[] checkSquares;
+	private long discoveredCheckCandidates;
+	private int enemyKingSquare;
+
+	public AttackMap()
+	{
+		this.position = null;
+		this.hasAttacks = false;
+		this.attacksKey = 0L;
+		this.attacksFrom = new long[Squares.NUM_SQUARES];
+		this.attackedSquares = new long[Position.NUM_COLORS];
+		this.numCaptureTargets = new int[Position.NUM_COLORS];
+		this.hasChecks = false;
+		this.checksKey = 0L;
+		this.checkSquares = new long[Position.NUM_PIECE_TYPES];
+		this.discoveredCheckCandidates = Bitboards.EMPTY;
+		this.enemyKingSquare = -1;
+	}
+
+	public AttackMap(Position position)
+	{
+		this();
+		this.setPosition(position);
+	}
+
+	public Position getPosition() { return this.position; }
+
+	/**
+	 * Point this map at a position. Nothing is computed until the map is queried, and anything already
+	 * computed for the same position (same key) is kept
+	 */
+	public void setPosition(Position position)
+	{
+		if(this.position != position)
+		{
+			this.position = position;
+			this.hasAttacks = false;
+			this.hasChecks = false;
+		}
+	}
+
+	private void ensureAttacks()
+	{
+		Position position = this.getPosition();
+		if(this.hasAttacks && this.attacksKey == position.getKey())
+		{
+			return;
+		}
+
+		for(int color = 0; color < Position.NUM_COLORS; ++color)
+		{
+			long enemies = position.getColorBoard(Position.getOtherColor(color));
+			long attacked = Bitboards.EMPTY;
+			int numTargets = 0;
+			for(long pieces = position.getColorBoard(color); pieces != 0; pieces = Bitboards.removeFirstSquare(pieces))
+			{
+				int square = Bitboards.getFirstSquare(pieces);
+				long attacks = position.getAttacks(square);
+				this.attacksFrom[square] = attacks;
+				attacked |= attacks;
+				numTargets += Bitboards.count(attacks & enemies);
+			}
+			this.attackedSquares[color] = attacked;
+			this.numCaptureTargets[color] = numTargets;
+		}
+		this.attacksKey = position.getKey();
+		this.hasAttacks = true;
+	}
+
+	private void ensureChecks()
+	{
+		Position position = this.getPosition();
+		if(this.hasChecks && this.checksKey == position.getKey())
+		{
+			return;
+		}
+
+		int color = position.getSideToMove();
+		int kingSquare = position.getKingSquare(Position.getOtherColor(color));
+		this.enemyKingSquare = kingSquare;
+		this.discoveredCheckCandidates = Bitboards.EMPTY;
+		if(kingSquare < 0)
+		{
+			for(int type = 0; type < Position.NUM_PIECE_TYPES; ++type)
+			{
+				this.checkSquares[type] = Bitboards.EMPTY;
+			}
+		} else
+		{
+			long occupancy = position.getOccupancy();
+			for(int type = 0; type < Position.PAWN; ++type)
+			{
+				this.checkSquares[type] = Bitboards.getAttacks(type, kingSquare, occupancy);
+			}
+			// a pawn of ours attacks the king from wherever an enemy pawn on the king's square would attack
+			this.checkSquares[Position.PAWN] = Bitboards.getPawnAttacks(Position.getOtherColor(color), kingSquare);
+
+			// our sliders that see the king through exactly one of our own pieces: moving that piece off
+			// the line uncovers a check
+			long queens = position.getPieceBoard(color, Position.QUEEN);
+			long snipers = (Bitboards.getRookAttacks(kingSquare, Bitboards.EMPTY) & (position.getPieceBoard(color, Position.ROOK) | queens))
+				| (Bitboards.getBishopAttacks(kingSquare, Bitboards.EMPTY) & (position.getPieceBoard(color, Position.BISHOP) | queens));
+			for(; snipers != 0; snipers = Bitboards.removeFirstSquare(snipers))
+			{
+				long blockers = Bitboards.getBetween(kingSquare, Bitboards.getFirstSquare(snipers)) & occupancy;
+				if(Bitboards.count(blockers) == 1 && (blockers & position.getColorBoard(color)) != 0)
+				{
+					this.discoveredCheckCandidates |= blockers;
+				}
+			}
+		}
+		this.checksKey = position.getKey();
+		this.hasChecks = true;
+	}
+
+	/**
+	 * The squares attacked by the piece on square (EMPTY for an empty square)
+	 */
+	public long getAttacksFrom(int square)
+	{
+		this.ensureAttacks();
+		return this.getPosition().isEmpty(square) ? Bitboards.EMPTY : this.attacksFrom[square];
+	}
+
+	/**
+	 * Every square attacked by at least one piece of color
+	 */
+	public long getAttackedSquares(int color)
+	{
+		this.ensureAttacks();
+		return this.attackedSquares[color];
+	}
+
+	public boolean isAttacked(int square, int byColor)
+	{
+		return Bitboards.contains(this.getAttackedSquares(byColor), square);
+	}
+
+	/**
+	 * The number of (piece of color, enemy piece it attacks) pairs
+	 */
+	public int getNumCaptureTargets(int color)
+	{
+		this.ensureAttacks();
+		return this.numCaptureTargets[color];
+	}
+
+	/**
+	 * The squares from which a piece of the side to move of the given type would attack the enemy king
+	 */
+	public long getCheckSquares(int type)
+	{
+		this.ensureChecks();
+		return this.checkSquares[type];
+	}
+
+	/**
+	 * Pieces of the side to move standing between one of its sliders and the enemy king
+	 */
+	public long getDiscoveredCheckCandidates()
+	{
+		this.ensureChecks();
+		return this.discoveredCheckCandidates;
+	}
+
+	/**
+	 * Does playing move (a legal move of the side to move) leave the enemy king attacked? Same answer as
+	 * makeMove / isInCheck / unmakeMove, without touching the position for anything but castles
+	 */
+	public boolean givesCheck(int move)
+	{
+		this.ensureChecks();
+		if(this.enemyKingSquare < 0)
+		{
+			return false;
+		}
+
+		Position position = this.getPosition();
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		switch(Moves.getKind(move))
+		{
+			case Moves.PROMOTION:
+				// promoted in place: nothing moves, so only the new piece itself can give check
+				return Bitboards.contains(Bitboards.getAttacks(Moves.getPromotionType(move), from, position.getOccupancy()),
+					this.enemyKingSquare);
+			case Moves.CASTLE:
+				// rare enough that making the move is fine
+				position.makeMove(move);
+				boolean isCheck = position.isInCheck(position.getSideToMove());
+				position.unmakeMove();
+				return isCheck;
+			default:
+				int type = Position.getType(position.getPiece(from));
+				return Bitboards.contains(this.checkSquares[type], to)
+					|| (Bitboards.contains(this.discoveredCheckCandidates, from)
+						&& !Bitboards.contains(Bitboards.getLine(this.enemyKingSquare, from), to));
+		}
+	}
+
+}
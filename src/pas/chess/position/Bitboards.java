@@ -0,0 +1,272 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Precomputed attack tables for a bitboard board representation: a long holds one bit per square, bit i
+ * standing for square i in the numbering of Squares (a1 = bit 0, h8 = bit 63).
+ *
+ * Knight, king and pawn attacks are plain lookups. Rook and bishop attacks use "magic" bitboards: the blockers
+ * on the relevant rays are multiplied by a per-square magic number so that the top bits form a perfect index
+ * into a table of attack sets. The magics are searched for once when the class is loaded (with a fixed seed,
+ * so the tables are identical on every run), which takes a few tens of milliseconds.
+ */
+public final class Bitboards
+    extends Object
+{
+
+	public static final long EMPTY = 0L;
+	public static final long FILE_A = 0x0101010101010101L;
+	public static final long FILE_H = FILE_A << 7;
+	public static final long RANK_1 = 0xFFL;
+	public static final long RANK_8 = RANK_1 << 56;
+
+	private static final long[] KNIGHT_ATTACKS = new long[Squares.NUM_SQUARES];
+	private static final long[] KING_ATTACKS = new long[Squares.NUM_SQUARES];
+	private static final long[][] PAWN_ATTACKS = new long[Position.NUM_COLORS][Squares.NUM_SQUARES];
+
+	// BETWEEN[a][b]: the squares strictly between a and b, LINE[a][b]: the whole board line through a and b
+	// (both empty when a and b are not on a common rank, file or diagonal)
+	private static final long[][] BETWEEN = new long[Squares.NUM_SQUARES][Squares.NUM_SQUARES];
+	private static final long[][] LINE = new long[Squares.NUM_SQUARES][Squares.NUM_SQUARES];
+
+	private static final long[] ROOK_MASKS = new long[Squares.NUM_SQUARES];
+	private static final long[] ROOK_MAGICS = new long[Squares.NUM_SQUARES];
+	private static final int[] ROOK_SHIFTS = new int[Squares.NUM_SQUARES];
+	private static final long[][] ROOK_ATTACKS = new long[Squares.NUM_SQUARES][];
+
+	private static final long[] BISHOP_MASKS = new long[Squares.NUM_SQUARES];
+	private static final long[] BISHOP_MAGICS = new long[Squares.NUM_SQUARES];
+	private static final int[] BISHOP_SHIFTS = new int[Squares.NUM_SQUARES];
+	private static final long[][] BISHOP_ATTACKS = new long[Squares.NUM_SQUARES][];
+
+	// fixed seed so the magic numbers (and table layout) are reproducible between runs
+	private static final long MAGIC_SEED = 0x2545F4914F6CDD1DL;
+
+	static
+	{
+		for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+		{
+			KNIGHT_ATTACKS[square] = Bitboards.fromSquares(Squares.getKnightTargets(square));
+			KING_ATTACKS[square] = Bitboards.fromSquares(Squares.getKingTargets(square));
+			for(int color = 0; color < Position.NUM_COLORS; ++color)
+			{
+				PAWN_ATTACKS[color][square] = Bitboards.fromSquares(Squares.getPawnCaptureTargets(color, square));
+			}
+
+			for(int direction = 0; direction < Squares.NUM_DIRECTIONS; ++direction)
+			{
+				int oppositeDirection = (direction + Squares.NUM_DIRECTIONS / 2) % Squares.NUM_DIRECTIONS;
+				long line = (1L << square) | Bitboards.fromSquares(Squares.getRay(square, direction))
+					| Bitboards.fromSquares(Squares.getRay(square, oppositeDirection));
+				long between = EMPTY;
+				for(int target : Squares.getRay(square, direction))
+				{
+					BETWEEN[square][target] = between;
+					LINE[square][target] = line;
+					between |= 1L << target;
+				}
+			}
+		}
+
+		long[] seed = new long[] {MAGIC_SEED};
+		for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+		{
+			Bitboards.initMagic(square, false, seed);
+			Bitboards.initMagic(square, true, seed);
+		}
+	}
+
+	private Bitboards() {}
+
+	public static long getSquareBit(int square) { return 1L << square; }
+	public static int getFirstSquare(long bitboard) { return Long.numberOfTrailingZeros(bitboard); }
+	public static long removeFirstSquare(long bitboard) { return bitboard & (bitboard - 1); }
+	public static int count(long bitboard) { return Long.bitCount(bitboard); }
+	public static boolean contains(long bitboard, int square) { return (bitboard & (1L << square)) != 0; }
+
+	public static long getKnightAttacks(int square) { return KNIGHT_ATTACKS[square]; }
+	public static long getKingAttacks(int square) { return KING_ATTACKS[square]; }
+
+	/**
+	 * The squares a pawn of the given color standing on square attacks
+	 */
+	public static long getPawnAttacks(int color, int square) { return PAWN_ATTACKS[color][square]; }
+
+	/**
+	 * The squares strictly between from and to if they share a rank, file or diagonal, otherwise EMPTY
+	 */
+	public static long getBetween(int from, int to) { return BETWEEN[from][to]; }
+
+	/**
+	 * The full rank, file or diagonal through from and to, otherwise EMPTY
+	 */
+	public static long getLine(int from, int to) { return LINE[from][to]; }
+
+	public static long getRookAttacks(int square, long occupancy)
+	{
+		return ROOK_ATTACKS[square][(int)(((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+	}
+
+	public static long getBishopAttacks(int square, long occupancy)
+	{
+		return BISHOP_ATTACKS[square][(int)(((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+	}
+
+	public static long getQueenAttacks(int square, long occupancy)
+	{
+		return Bitboards.getRookAttacks(square, occupancy) | Bitboards.getBishopAttacks(square, occupancy);
+	}
+
+	/**
+	 * Attacks of a non-pawn piece type from square given the board occupancy
+	 */
+	public static long getAttacks(int type, int square, long occupancy)
+	{
+		switch(type)
+		{
+			case Position.KNIGHT:
+				return KNIGHT_ATTACKS[square];
+			case Position.KING:
+				return KING_ATTACKS[square];
+			case Position.BISHOP:
+				return Bitboards.getBishopAttacks(square, occupancy);
+			case Position.ROOK:
+				return Bitboards.getRookAttacks(square, occupancy);
+			case Position.QUEEN:
+				return Bitboards.getQueenAttacks(square, occupancy);
+			default:
+				return EMPTY;
+		}
+	}
+
+	private static long fromSquares(int[] squares)
+	{
+		long bitboard = EMPTY;
+		for(int square : squares)
+		{
+			bitboard |= 1L << square;
+		}
+		return bitboard;
+	}
+
+	/**
+	 * Attacks along the rook (or bishop) rays from square, stopping at (and including) the first blocker.
+	 * Only used to fill the magic tables
+	 */
+	private static long getSlidingAttacks(int square, long occupancy, boolean isBishop)
+	{
+		long attacks = EMPTY;
+		for(int direction = isBishop ? 1 : 0; direction < Squares.NUM_DIRECTIONS; direction += 2)
+		{
+			for(int target : Squares.getRay(square, direction))
+			{
+				attacks |= 1L << target;
+				if((occupancy & (1L << target)) != 0)
+				{
+					break;
+				}
+			}
+		}
+		return attacks;
+	}
+
+	/**
+	 * The squares whose occupancy matters for a slider on square: every ray square except the last one
+	 * (a blocker on the edge of the board changes nothing)
+	 */
+	private static long getRelevantOccupancyMask(int square, boolean isBishop)
+	{
+		long mask = EMPTY;
+		for(int direction = isBishop ? 1 : 0; direction < Squares.NUM_DIRECTIONS; direction += 2)
+		{
+			int[] ray = Squares.getRay(square, direction);
+			for(int rayIdx = 0; rayIdx < ray.length - 1; ++rayIdx)
+			{
+				mask |= 1L << ray[rayIdx];
+			}
+		}
+		return mask;
+	}
+
+	private static long nextRandom(long[] seed)
+	{
+		// xorshift64*
+		long x = seed[0];
+		x ^= x >>> 12;
+		x ^= x << 25;
+		x ^= x >>> 27;
+		seed[0] = x;
+		return x * 0x2545F4914F6CDD1DL;
+	}
+
+	private static void initMagic(int square, boolean isBishop, long[] seed)
+	{
+		long mask = Bitboards.getRelevantOccupancyMask(square, isBishop);
+		int numRelevantBits = Long.bitCount(mask);
+		int numSubsets = 1 << numRelevantBits;
+		int shift = 64 - numRelevantBits;
+
+		// every subset of the mask (carry-rippler enumeration) and the attacks it produces
+		long[] occupancies = new long[numSubsets];
+		long[] attacks = new long[numSubsets];
+		long subset = EMPTY;
+		for(int subsetIdx = 0; subsetIdx < numSubsets; ++subsetIdx)
+		{
+			occupancies[subsetIdx] = subset;
+			attacks[subsetIdx] = Bitboards.getSlidingAttacks(square, subset, isBishop);
+			subset = (subset - mask) & mask;
+		}
+
+		long[] table = new long[numSubsets];
+		int[] usedInTry = new int[numSubsets];
+		long magic = 0L;
+		for(int attempt = 1; ; ++attempt)
+		{
+			// sparse candidates work best
+			magic = Bitboards.nextRandom(seed) & Bitboards.nextRandom(seed) & Bitboards.nextRandom(seed);
+			if(Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6)
+			{
+				continue;
+			}
+
+			boolean isValid = true;
+			for(int subsetIdx = 0; subsetIdx < numSubsets && isValid; ++subsetIdx)
+			{
+				int index = (int)((occupancies[subsetIdx] * magic) >>> shift);
+				if(usedInTry[index] != attempt)
+				{
+					usedInTry[index] = attempt;
+					table[index] = attacks[subsetIdx];
+				} else if(table[index] != attacks[subsetIdx])
+				{
+					isValid = false;
+				}
+			}
+			if(isValid)
+			{
+				break;
+			}
+		}
+
+		if(isBishop)
+		{
+			BISHOP_MASKS[square] = mask;
+			BISHOP_MAGICS[square] = magic;
+			BISHOP_SHIFTS[square] = shift;
+			BISHOP_ATTACKS[square] = table;
+		} else
+		{
+			ROOK_MASKS[square] = mask;
+			ROOK_MAGICS[square] = magic;
+			ROOK_SHIFTS[square] = shift;
+			ROOK_ATTACKS[square] = table;
+		}
+	}
+
+}
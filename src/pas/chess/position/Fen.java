@@ -0,0 +1,162 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Forsyth-Edwards Notation for Position, so positions can be set up (and written down) without a Game.
+ * Only the fields this game's rules use are read: piece placement, side to move, and castling rights. The en
+ * passant field must be there if anything follows the castling field but is ignored (the library has no en
+ * passant), and so are the halfmove and fullmove counters. A pawn may stand on the last rank: in this game it
+ * waits there to be promoted in place.
+ */
+public final class Fen
+    extends Object
+{
+
+	public static final String START_POSITION = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+	private static final String PIECE_SYMBOLS = "KQBNRP";
+	private static final String CASTLING_SYMBOLS = "KQkq";
+	private static final int[] CASTLING_RIGHTS = new int[] {Position.WHITE_KINGSIDE, Position.WHITE_QUEENSIDE,
+		Position.BLACK_KINGSIDE, Position.BLACK_QUEENSIDE};
+
+	private Fen() {}
+
+	/**
+	 * Set up the position a FEN string describes
+	 * @throws IllegalArgumentException if fen is malformed or a side does not have exactly one king
+	 */
+	public static Position toPosition(String fen)
+	{
+		String[] fields = fen.trim().split("\\s+");
+		if(fields.length < 2)
+		{
+			throw new IllegalArgumentException("FEN needs at least piece placement and side to move: \"" + fen + "\"");
+		}
+
+		Position position = new Position();
+		String[] ranks = fields[0].split("/", -1);
+		if(ranks.length != 8)
+		{
+			throw new IllegalArgumentException("FEN piece placement needs 8 ranks, got " + ranks.length + ": \"" + fen + "\"");
+		}
+		for(int rankIdx = 0; rankIdx < 8; ++rankIdx)
+		{
+			int rank = 7 - rankIdx;
+			int file = 0;
+			for(char symbol : ranks[rankIdx].toCharArray())
+			{
+				if(symbol >= '1' && symbol <= '8')
+				{
+					file += symbol - '0';
+				} else
+				{
+					int type = PIECE_SYMBOLS.indexOf(Character.toUpperCase(symbol));
+					if(type < 0 || file >= 8)
+					{
+						throw new IllegalArgumentException("bad FEN rank \"" + ranks[rankIdx] + "\": \"" + fen + "\"");
+					}
+					int color = Character.isUpperCase(symbol) ? Position.WHITE : Position.BLACK;
+					position.putPiece(Squares.getSquare(file, rank), Position.makePiece(color, type));
+					++file;
+				}
+			}
+			if(file != 8)
+			{
+				throw new IllegalArgumentException("FEN rank \"" + ranks[rankIdx] + "\" does not have 8 squares: \"" + fen + "\"");
+			}
+		}
+		for(int color = 0; color < Position.NUM_COLORS; ++color)
+		{
+			if(position.getNumPieces(color, Position.KING) != 1)
+			{
+				throw new IllegalArgumentException("FEN must have exactly one king per side: \"" + fen + "\"");
+			}
+		}
+
+		switch(fields[1])
+		{
+			case "w":
+				position.setSideToMove(Position.WHITE);
+				break;
+			case "b":
+				position.setSideToMove(Position.BLACK);
+				break;
+			default:
+				throw new IllegalArgumentException("FEN side to move must be w or b, got \"" + fields[1] + "\": \"" + fen + "\"");
+		}
+
+		int castlingRights = 0;
+		if(fields.length > 2 && !fields[2].equals("-"))
+		{
+			for(char symbol : fields[2].toCharArray())
+			{
+				int castlingIdx = CASTLING_SYMBOLS.indexOf(symbol);
+				if(castlingIdx < 0)
+				{
+					throw new IllegalArgumentException("bad FEN castling rights \"" + fields[2] + "\": \"" + fen + "\"");
+				}
+				castlingRights |= CASTLING_RIGHTS[castlingIdx];
+			}
+		}
+		position.setCastlingRights(castlingRights);
+		return position;
+	}
+
+	/**
+	 * The FEN of a position: placement, side to move, castling rights, and "-" for en passant (no counters)
+	 */
+	public static String toFen(Position position)
+	{
+		StringBuilder builder = new StringBuilder();
+		for(int rank = 7; rank >= 0; --rank)
+		{
+			int numEmpty = 0;
+			for(int file = 0; file < 8; ++file)
+			{
+				int piece = position.getPiece(Squares.getSquare(file, rank));
+				if(piece == Position.EMPTY)
+				{
+					++numEmpty;
+					continue;
+				}
+				if(numEmpty > 0)
+				{
+					builder.append(numEmpty);
+					numEmpty = 0;
+				}
+				builder.append(Position.getSymbol(piece));
+			}
+			if(numEmpty > 0)
+			{
+				builder.append(numEmpty);
+			}
+			if(rank > 0)
+			{
+				builder.append('/');
+			}
+		}
+
+		builder.append(position.getSideToMove() == Position.WHITE ? " w " : " b ");
+		int numRights = 0;
+		for(int castlingIdx = 0; castlingIdx < CASTLING_RIGHTS.length; ++castlingIdx)
+		{
+			if((position.getCastlingRights() & CASTLING_RIGHTS[castlingIdx]) != 0)
+			{
+				builder.append(CASTLING_SYMBOLS.charAt(castlingIdx));
+				++numRights;
+			}
+		}
+		if(numRights == 0)
+		{
+			builder.append('-');
+		}
+		return builder.append(" -").toString();
+	}
+
+}
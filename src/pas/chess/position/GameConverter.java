@@ -0,0 +1,244 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.Board;
+import edu.bu.chess.game.Game;
+import edu.bu.chess.game.move.CaptureMove;
+import edu.bu.chess.game.move.CastleMove;
+import edu.bu.chess.game.move.Move;
+import edu.bu.chess.game.move.MovementMove;
+import edu.bu.chess.game.move.PromotePawnMove;
+import edu.bu.chess.game.piece.King;
+import edu.bu.chess.game.piece.Piece;
+import edu.bu.chess.game.piece.PieceType;
+import edu.bu.chess.game.piece.Rook;
+import edu.bu.chess.game.player.Player;
+import edu.bu.chess.game.player.PlayerType;
+import edu.bu.chess.utils.Coordinate;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Translation between the library's objects (Game, Move) and the search's (Position, int moves).
+ * The search only ever touches a Position; we convert once at the root and convert the chosen move back
+ * so the Planner gets the same Move objects it always did.
+ */
+public final class GameConverter
+    extends Object
+{
+
+	// a Game made by toGame gets a full clock, nothing it is used for looks at it
+	private static final long TIME_LEFT_IN_MS = 100000L;
+
+	private GameConverter() {}
+
+	public static int getColor(Player player)
+	{
+		return player.getPlayerType() == PlayerType.WHITE ? Position.WHITE : Position.BLACK;
+	}
+
+	public static Player getPlayer(Game game, int color)
+	{
+		return color == Position.WHITE ? game.getWhitePlayer() : game.getBlackPlayer();
+	}
+
+	/**
+	 * Castling rights from the King/Rook canCastle flags: a king on its starting square that may still castle,
+	 * together with a rook on its starting corner that may still castle, gives the right to castle towards that
+	 * rook. The squares are checked too because the library only clears the flags when a move is carried out on
+	 * the real board, a Game produced by applyMove(...) still has them set after the king or rook moved.
+	 */
+	public static int getCastlingRights(Game game)
+	{
+		int castlingRights = 0;
+		for(Player player : new Player[] {game.getWhitePlayer(), game.getBlackPlayer()})
+		{
+			int color = GameConverter.getColor(player);
+			int homeRank = color == Position.WHITE ? 0 : 7;
+			for(Piece king : game.getBoard().getPieces(player, PieceType.KING))
+			{
+				if(!((King)king).canCastle()
+					|| Squares.getSquare(game.getCurrentPosition(king)) != Squares.getSquare(4, homeRank))
+				{
+					continue;
+				}
+				for(Piece rook : game.getBoard().getPieces(player, PieceType.ROOK))
+				{
+					int rookSquare = Squares.getSquare(game.getCurrentPosition(rook));
+					if(!((Rook)rook).canCastle())
+					{
+						continue;
+					}
+					if(rookSquare == Squares.getSquare(7, homeRank))
+					{
+						castlingRights |= color == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+					} else if(rookSquare == Squares.getSquare(0, homeRank))
+					{
+						castlingRights |= color == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+					}
+				}
+			}
+		}
+		return castlingRights;
+	}
+
+	/**
+	 * Build a Position holding the same board, side to move, and castling rights as the game
+	 */
+	public static Position toPosition(Game game)
+	{
+		Position position = new Position();
+		for(Player player : new Player[] {game.getWhitePlayer(), game.getBlackPlayer()})
+		{
+			int color = GameConverter.getColor(player);
+			position.setPlayerID(color, player.getPlayerID());
+			for(Piece piece : game.getBoard().getPieces(player))
+			{
+				position.putPiece(Squares.getSquare(game.getCurrentPosition(piece)),
+					Position.makePiece(color, piece.getType().ordinal()));
+			}
+		}
+		position.setCastlingRights(GameConverter.getCastlingRights(game));
+		position.setSideToMove(GameConverter.getColor(game.getCurrentPlayer()));
+		return position;
+	}
+
+	/**
+	 * Build a library Game with the same board, side to move, and castling rights as the position, for the
+	 * headless tools (benchmarks, the differential tester) that need DFSTreeNodes without a SEPIA game. The
+	 * library only makes Games from a SEPIA state, so this calls Game's private constructor the way makeNewGame
+	 * would: fine for setting up a search, but the Game is not registered with the Planner.
+	 * The player IDs are the colors (Position.WHITE, Position.BLACK)
+	 */
+	public static Game toGame(Position position)
+	{
+		Player white = new Player(Position.WHITE, PlayerType.WHITE);
+		Player black = new Player(Position.BLACK, PlayerType.BLACK);
+
+		Map<Integer, Piece> whitePieces = new HashMap<Integer, Piece>();
+		Map<Integer, Integer> whiteUnitIDs = new HashMap<Integer, Integer>();
+		Map<Integer, Coordinate> whiteCoordinates = new HashMap<Integer, Coordinate>();
+		Map<Integer, Piece> blackPieces = new HashMap<Integer, Piece>();
+		Map<Integer, Integer> blackUnitIDs = new HashMap<Integer, Integer>();
+		Map<Integer, Coordinate> blackCoordinates = new HashMap<Integer, Coordinate>();
+
+		int pieceID = 0;
+		for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+		{
+			int piece = position.getPiece(square);
+			if(piece == Position.EMPTY)
+			{
+				continue;
+			}
+			++pieceID;
+			boolean isWhite = Position.getColor(piece) == Position.WHITE;
+			PieceType type = PieceType.values()[Position.getType(piece)];
+			Piece gamePiece = Piece.makePiece(pieceID, isWhite ? white : black, type);
+			if((type == PieceType.KING || type == PieceType.ROOK)
+				&& !GameConverter.hasCastlingRight(position, Position.getColor(piece), type, square))
+			{
+				GameConverter.clearCanCastle(gamePiece);
+			}
+			(isWhite ? whitePieces : blackPieces).put(pieceID, gamePiece);
+			(isWhite ? whiteUnitIDs : blackUnitIDs).put(pieceID, pieceID);
+			(isWhite ? whiteCoordinates : blackCoordinates).put(pieceID, Squares.getCoordinate(square));
+		}
+
+		Board board = new Board(blackPieces, blackUnitIDs, blackCoordinates, whitePieces, whiteUnitIDs, whiteCoordinates);
+		try
+		{
+			Constructor<Game> constructor = Game.class.getDeclaredConstructor(Player.class, Player.class, Board.class,
+				Player.class, long.class, long.class, Map.class);
+			constructor.setAccessible(true);
+			return constructor.newInstance(black, white, board,
+				position.getSideToMove() == Position.WHITE ? white : black,
+				GameConverter.TIME_LEFT_IN_MS, GameConverter.TIME_LEFT_IN_MS,
+				new HashMap<Player, Map<PieceType, Integer>>());
+		} catch(ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("GameConverter.toGame: cannot construct a Game", e);
+		}
+	}
+
+	/**
+	 * Does the position let this king (or rook) castle? New library pieces may always castle, wherever they stand
+	 */
+	private static boolean hasCastlingRight(Position position, int color, PieceType type, int square)
+	{
+		int homeRank = color == Position.WHITE ? 0 : 7;
+		int kingside = color == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+		int queenside = color == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+		int rights = position.getCastlingRights();
+		if(type == PieceType.KING)
+		{
+			return square == Squares.getSquare(4, homeRank) && (rights & (kingside | queenside)) != 0;
+		}
+		return (square == Squares.getSquare(7, homeRank) && (rights & kingside) != 0)
+			|| (square == Squares.getSquare(0, homeRank) && (rights & queenside) != 0);
+	}
+
+	private static void clearCanCastle(Piece piece)
+	{
+		try
+		{
+			Field canCastle = piece.getClass().getDeclaredField("canCastle");
+			canCastle.setAccessible(true);
+			canCastle.setBoolean(piece, false);
+		} catch(ReflectiveOperationException e)
+		{
+			throw new IllegalStateException("GameConverter.clearCanCastle: cannot clear the castling flag of " + piece, e);
+		}
+	}
+
+	/**
+	 * The int form of a library move, as MoveGenerator would have generated it in the converted position
+	 */
+	public static int encodeMove(Game game, Move move)
+	{
+		Player player = move.getActorPlayer();
+		int from = Squares.getSquare(game.getCurrentPosition(player, move.getActorPieceID()));
+		switch(move.getType())
+		{
+			case MOVEMENTMOVE:
+				return Moves.makeMove(from, Squares.getSquare(((MovementMove)move).getTargetPosition()), Moves.MOVEMENT);
+			case CAPTUREMOVE:
+				CaptureMove captureMove = (CaptureMove)move;
+				return Moves.makeMove(from,
+					Squares.getSquare(game.getCurrentPosition(captureMove.getTargetPlayer(), captureMove.getTargetPieceID())),
+					Moves.CAPTURE);
+			case CASTLEMOVE:
+				Coordinate rookPosition = game.getCurrentPosition(player, ((CastleMove)move).getRookPieceID());
+				int step = Squares.getSquare(rookPosition) > from ? 2 : -2;
+				return Moves.makeMove(from, from + step, Moves.CASTLE);
+			case PROMOTEPAWNMOVE:
+				return Moves.makePromotion(from, Moves.getPromotionIdx(((PromotePawnMove)move).getPromotedPieceType()));
+			default:
+				return Moves.NO_MOVE;
+		}
+	}
+
+	/**
+	 * Find the library move (among the legal moves of the player to move) that the int move stands for
+	 * @return the matching Move, or null if the move is not legal in the game
+	 */
+	public static Move decodeMove(Game game, int move)
+	{
+		for(Move candidate : game.getAllMoves(game.getCurrentPlayer()))
+		{
+			if(GameConverter.encodeMove(game, candidate) == move)
+			{
+				return candidate;
+			}
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,352 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Move generation for Position that follows the rules of the edu.bu.chess library rather than textbook chess:
+ *     - no en passant
+ *     - a pawn that reaches the last rank stays a pawn, and is promoted in place (from == to) on a later turn
+ *     - castling needs the king and rook rights, empty squares between them, and the king must not be
+ *       attacked on its square or the two squares it walks over
+ *
+ * Moves are written into caller-owned int[] buffers (at least Moves.MAX_MOVES long) so nothing is allocated.
+ */
+public final class MoveGenerator
+    extends Object
+{
+
+	private MoveGenerator() {}
+
+	private static int getForward(int color) { return color == Position.WHITE ? 8 : -8; }
+	private static long getLastRankMask(int color) { return color == Position.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1; }
+
+	// pawns pushed once onto this rank may push again: the rank right after the pawn starting rank
+	private static long getDoublePushRankMask(int color) { return color == Position.WHITE ? Bitboards.RANK_1 << 16 : Bitboards.RANK_1 << 40; }
+
+	private static long pushPawns(long pawns, int color) { return color == Position.WHITE ? pawns << 8 : pawns >>> 8; }
+
+	// squares the king must cross (kingside, queenside) for each color, all of them have to be empty
+	private static final long[][] CASTLING_PATHS = new long[][] {
+		{(1L << 5) | (1L << 6), (1L << 1) | (1L << 2) | (1L << 3)},
+		{(1L << 61) | (1L << 62), (1L << 57) | (1L << 58) | (1L << 59)}};
+
+	// which moves generatePseudoLegalMoves writes
+	private static final int ALL_MOVES = 0;
+	private static final int CAPTURES = 1; // captures and promotions
+	private static final int QUIETS = 2;   // everything else
+
+	/**
+	 * All moves of the side to move, including ones that leave its own king attacked.
+	 * Pieces are visited in square order (castles right after the king's own moves): CustomMoveOrderer sorts
+	 * stably, so this order decides which of two equally scored moves is searched first.
+	 * @param position
+	 * @param moves buffer to write the moves into
+	 * @return the number of moves written
+	 */
+	public static int generatePseudoLegalMoves(Position position, int[] moves)
+	{
+		return MoveGenerator.generatePseudoLegalMoves(position, ALL_MOVES, moves);
+	}
+
+	/**
+	 * Only the captures and promotions of the side to move (what quiescence search looks at), including ones
+	 * that leave its own king attacked. Same order as generatePseudoLegalMoves
+	 * @param position
+	 * @param moves buffer to write the moves into
+	 * @return the number of moves written
+	 */
+	public static int generatePseudoLegalCaptures(Position position, int[] moves)
+	{
+		return MoveGenerator.generatePseudoLegalMoves(position, CAPTURES, moves);
+	}
+
+	/**
+	 * Everything generatePseudoLegalCaptures leaves out: moves to empty squares and castles. Same order as
+	 * generatePseudoLegalMoves
+	 * @param position
+	 * @param moves buffer to write the moves into
+	 * @return the number of moves written
+	 */
+	public static int generatePseudoLegalQuiets(Position position, int[] moves)
+	{
+		return MoveGenerator.generatePseudoLegalMoves(position, QUIETS, moves);
+	}
+
+	private static int generatePseudoLegalMoves(Position position, int kind, int[] moves)
+	{
+		int color = position.getSideToMove();
+		long own = position.getColorBoard(color);
+		long enemies = position.getColorBoard(Position.getOtherColor(color));
+		long targetMask = kind == CAPTURES ? enemies : (kind == QUIETS ? ~position.getOccupancy() : ~own);
+
+		int numMoves = 0;
+		for(long pieces = own; pieces != 0; pieces = Bitboards.removeFirstSquare(pieces))
+		{
+			int from = Bitboards.getFirstSquare(pieces);
+			int type = Position.getType(position.getPiece(from));
+			if(type == Position.PAWN)
+			{
+				numMoves = MoveGenerator.generatePawnMoves(position, from, color, enemies, kind, moves, numMoves);
+				continue;
+			}
+
+			for(long targets = Bitboards.getAttacks(type, from, position.getOccupancy()) & targetMask; targets != 0;
+				targets = Bitboards.removeFirstSquare(targets))
+			{
+				int to = Bitboards.getFirstSquare(targets);
+				moves[numMoves++] = Moves.makeMove(from, to, Bitboards.contains(enemies, to) ? Moves.CAPTURE : Moves.MOVEMENT);
+			}
+			if(type == Position.KING && kind != CAPTURES)
+			{
+				numMoves = MoveGenerator.generateCastles(position, color, moves, numMoves);
+			}
+		}
+		return numMoves;
+	}
+
+	private static int generatePawnMoves(Position position, int square, int color, long enemies, int kind,
+                                         int[] moves, int numMoves)
+	{
+		long pawn = Bitboards.getSquareBit(square);
+
+		// a pawn on the last rank has nothing to do but be promoted in place
+		if((pawn & MoveGenerator.getLastRankMask(color)) != 0)
+		{
+			if(kind == QUIETS)
+			{
+				return numMoves;
+			}
+			for(int promotionIdx = 0; promotionIdx < Moves.PROMOTION_TYPES.length; ++promotionIdx)
+			{
+				moves[numMoves++] = Moves.makePromotion(square, promotionIdx);
+			}
+			return numMoves;
+		}
+
+		long empty = ~position.getOccupancy();
+		long singlePush = kind == CAPTURES ? Bitboards.EMPTY : MoveGenerator.pushPawns(pawn, color) & empty;
+		if(singlePush != 0)
+		{
+			moves[numMoves++] = Moves.makeMove(square, square + MoveGenerator.getForward(color), Moves.MOVEMENT);
+			if((MoveGenerator.pushPawns(singlePush & MoveGenerator.getDoublePushRankMask(color), color) & empty) != 0)
+			{
+				moves[numMoves++] = Moves.makeMove(square, square + 2 * MoveGenerator.getForward(color), Moves.MOVEMENT);
+			}
+		}
+		long captureTargets = kind == QUIETS ? Bitboards.EMPTY : Bitboards.getPawnAttacks(color, square) & enemies;
+		for(long targets = captureTargets; targets != 0; targets = Bitboards.removeFirstSquare(targets))
+		{
+			moves[numMoves++] = Moves.makeMove(square, Bitboards.getFirstSquare(targets), Moves.CAPTURE);
+		}
+		return numMoves;
+	}
+
+	private static int generateCastles(Position position, int color, int[] moves, int numMoves)
+	{
+		int homeRank = color == Position.WHITE ? 0 : 7;
+		int kingSquare = Squares.getSquare(4, homeRank);
+		int kingsideRight = color == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+		int queensideRight = color == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+		if((position.getCastlingRights() & (kingsideRight | queensideRight)) == 0
+			|| position.getPiece(kingSquare) != Position.makePiece(color, Position.KING))
+		{
+			return numMoves;
+		}
+
+		int enemy = Position.getOtherColor(color);
+		if((position.getCastlingRights() & kingsideRight) != 0
+			&& MoveGenerator.canCastle(position, color, enemy, kingSquare, Squares.getSquare(7, homeRank), CASTLING_PATHS[color][0], 1))
+		{
+			moves[numMoves++] = Moves.makeMove(kingSquare, kingSquare + 2, Moves.CASTLE);
+		}
+		if((position.getCastlingRights() & queensideRight) != 0
+			&& MoveGenerator.canCastle(position, color, enemy, kingSquare, Squares.getSquare(0, homeRank), CASTLING_PATHS[color][1], -1))
+		{
+			moves[numMoves++] = Moves.makeMove(kingSquare, kingSquare - 2, Moves.CASTLE);
+		}
+		return numMoves;
+	}
+
+	private static boolean canCastle(Position position, int color, int enemy, int kingSquare, int rookSquare, long path, int step)
+	{
+		if(position.getPiece(rookSquare) != Position.makePiece(color, Position.ROOK) || (position.getOccupancy() & path) != 0)
+		{
+			return false;
+		}
+		for(int distance = 0; distance < 3; ++distance)
+		{
+			if(position.isSquareAttacked(kingSquare + distance * step, enemy))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Would generatePseudoLegalMoves produce this move in this position? For moves that come from somewhere
+	 * else than the generator (the transposition table, killers of a sibling), so they can be played without
+	 * generating every move first
+	 */
+	public static boolean isPseudoLegal(Position position, int move)
+	{
+		if(move == Moves.NO_MOVE)
+		{
+			return false;
+		}
+		int color = position.getSideToMove();
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		int piece = position.getPiece(from);
+		if(piece == Position.EMPTY || Position.getColor(piece) != color)
+		{
+			return false;
+		}
+
+		int type = Position.getType(piece);
+		boolean isOnLastRank = Bitboards.contains(MoveGenerator.getLastRankMask(color), from);
+		switch(Moves.getKind(move))
+		{
+			case Moves.PROMOTION:
+				return type == Position.PAWN && isOnLastRank && to == from;
+			case Moves.CASTLE:
+				return MoveGenerator.isPseudoLegalCastle(position, color, from, to);
+			case Moves.CAPTURE:
+				if(position.isEmpty(to) || Position.getColor(position.getPiece(to)) == color)
+				{
+					return false;
+				}
+				return type == Position.PAWN
+					? !isOnLastRank && Bitboards.contains(Bitboards.getPawnAttacks(color, from), to)
+					: Bitboards.contains(Bitboards.getAttacks(type, from, position.getOccupancy()), to);
+			default:
+				if(!position.isEmpty(to))
+				{
+					return false;
+				}
+				if(type != Position.PAWN)
+				{
+					return Bitboards.contains(Bitboards.getAttacks(type, from, position.getOccupancy()), to);
+				}
+				int forward = MoveGenerator.getForward(color);
+				if(isOnLastRank || !position.isEmpty(from + forward))
+				{
+					return false;
+				}
+				return to == from + forward
+					|| (to == from + 2 * forward
+						&& Bitboards.contains(MoveGenerator.getDoublePushRankMask(color), from + forward));
+		}
+	}
+
+	private static boolean isPseudoLegalCastle(Position position, int color, int from, int to)
+	{
+		int homeRank = color == Position.WHITE ? 0 : 7;
+		int kingSquare = Squares.getSquare(4, homeRank);
+		if(from != kingSquare || position.getPiece(kingSquare) != Position.makePiece(color, Position.KING))
+		{
+			return false;
+		}
+
+		int enemy = Position.getOtherColor(color);
+		if(to == kingSquare + 2)
+		{
+			int kingsideRight = color == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+			return (position.getCastlingRights() & kingsideRight) != 0
+				&& MoveGenerator.canCastle(position, color, enemy, kingSquare, Squares.getSquare(7, homeRank), CASTLING_PATHS[color][0], 1);
+		}
+		if(to == kingSquare - 2)
+		{
+			int queensideRight = color == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+			return (position.getCastlingRights() & queensideRight) != 0
+				&& MoveGenerator.canCastle(position, color, enemy, kingSquare, Squares.getSquare(0, homeRank), CASTLING_PATHS[color][1], -1);
+		}
+		return false;
+	}
+
+	/**
+	 * Does this move leave the mover's own king unattacked? Tried by making and unmaking the move
+	 */
+	public static boolean isLegal(Position position, int move)
+	{
+		int color = position.getSideToMove();
+		position.makeMove(move);
+		boolean isLegal = !position.isInCheck(color);
+		position.unmakeMove();
+		return isLegal;
+	}
+
+	/**
+	 * The same moves the library's Game.getAllMoves(currentPlayer) would return (in a different order)
+	 * @param position
+	 * @param moves buffer to write the moves into
+	 * @return the number of moves written
+	 */
+	public static int generateLegalMoves(Position position, int[] moves)
+	{
+		int numPseudoLegalMoves = MoveGenerator.generatePseudoLegalMoves(position, moves);
+		int numMoves = 0;
+		for(int moveIdx = 0; moveIdx < numPseudoLegalMoves; ++moveIdx)
+		{
+			if(MoveGenerator.isLegal(position, moves[moveIdx]))
+			{
+				moves[numMoves++] = moves[moveIdx];
+			}
+		}
+		return numMoves;
+	}
+
+	/**
+	 * The legal captures and promotions of the side to move
+	 * @param position
+	 * @param moves buffer to write the moves into
+	 * @return the number of moves written
+	 */
+	public static int generateLegalCaptures(Position position, int[] moves)
+	{
+		int numPseudoLegalMoves = MoveGenerator.generatePseudoLegalCaptures(position, moves);
+		int numMoves = 0;
+		for(int moveIdx = 0; moveIdx < numPseudoLegalMoves; ++moveIdx)
+		{
+			if(MoveGenerator.isLegal(position, moves[moveIdx]))
+			{
+				moves[numMoves++] = moves[moveIdx];
+			}
+		}
+		return numMoves;
+	}
+
+	/**
+	 * Cheaper than generateLegalMoves when all we need to know is whether the game is over
+	 * @param position
+	 * @param moves scratch buffer
+	 */
+	public static boolean hasLegalMove(Position position, int[] moves)
+	{
+		int numPseudoLegalMoves = MoveGenerator.generatePseudoLegalMoves(position, moves);
+		for(int moveIdx = 0; moveIdx < numPseudoLegalMoves; ++moveIdx)
+		{
+			if(MoveGenerator.isLegal(position, moves[moveIdx]))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * How many enemy pieces the piece on square could capture, counted like the library's
+	 * Piece.getAllCaptureMoves(game).size(): legality is ignored and the enemy king counts as a target
+	 */
+	public static int countCaptureTargets(Position position, int square)
+	{
+		int enemy = Position.getOtherColor(Position.getColor(position.getPiece(square)));
+		return Bitboards.count(position.getAttacks(square) & position.getColorBoard(enemy));
+	}
+
+}
@@ -0,0 +1,100 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.game.piece.PieceType;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Moves inside the search are plain ints so that move lists are int[] and never allocate:
+ *     bits  0-5   from square
+ *     bits  6-11  to square
+ *     bits 12-13  kind (MOVEMENT, CAPTURE, CASTLE, PROMOTION)
+ *     bits 14-15  promoted piece (index into PROMOTION_TYPES)
+ *
+ * A castle is encoded as the king's move (the rook follows), and a promotion has from == to because in this
+ * game a pawn first walks onto the last rank and is promoted in place on a later turn.
+ * 0 (a1 to a1 "movement") is never a real move and is used as NO_MOVE.
+ */
+public final class Moves
+    extends Object
+{
+
+	public static final int NO_MOVE = 0;
+
+	public static final int MOVEMENT = 0;
+	public static final int CAPTURE = 1;
+	public static final int CASTLE = 2;
+	public static final int PROMOTION = 3;
+
+	/**
+	 * The order the library offers promotions in (PieceType.values() without PAWN and KING)
+	 */
+	public static final int[] PROMOTION_TYPES = new int[] {Position.QUEEN, Position.BISHOP, Position.KNIGHT, Position.ROOK};
+
+	/**
+	 * Upper bound on the number of moves in any position we can reach (218 is the known maximum in chess)
+	 */
+	public static final int MAX_MOVES = 256;
+
+	private static final int TO_SHIFT = 6;
+	private static final int KIND_SHIFT = 12;
+	private static final int PROMOTION_SHIFT = 14;
+	private static final int SQUARE_MASK = 0x3F;
+
+	private Moves() {}
+
+	public static int makeMove(int from, int to, int kind)
+	{
+		return from | (to << TO_SHIFT) | (kind << KIND_SHIFT);
+	}
+
+	public static int makePromotion(int square, int promotionIdx)
+	{
+		return square | (square << TO_SHIFT) | (PROMOTION << KIND_SHIFT) | (promotionIdx << PROMOTION_SHIFT);
+	}
+
+	public static int getFrom(int move) { return move & SQUARE_MASK; }
+	public static int getTo(int move) { return (move >>> TO_SHIFT) & SQUARE_MASK; }
+	public static int getKind(int move) { return (move >>> KIND_SHIFT) & 0x3; }
+	public static int getPromotionType(int move) { return PROMOTION_TYPES[(move >>> PROMOTION_SHIFT) & 0x3]; }
+
+	public static boolean isCapture(int move) { return Moves.getKind(move) == CAPTURE; }
+	public static boolean isPromotion(int move) { return Moves.getKind(move) == PROMOTION; }
+	public static boolean isCastle(int move) { return Moves.getKind(move) == CASTLE; }
+
+	public static int getPromotionIdx(PieceType pieceType)
+	{
+		for(int promotionIdx = 0; promotionIdx < PROMOTION_TYPES.length; ++promotionIdx)
+		{
+			if(PROMOTION_TYPES[promotionIdx] == pieceType.ordinal())
+			{
+				return promotionIdx;
+			}
+		}
+		return -1;
+	}
+
+	public static String toString(int move)
+	{
+		if(move == NO_MOVE)
+		{
+			return "NO_MOVE";
+		}
+		StringBuilder builder = new StringBuilder();
+		builder.append((char)('a' + Squares.getFile(Moves.getFrom(move)))).append(Squares.getRank(Moves.getFrom(move)) + 1);
+		if(Moves.isPromotion(move))
+		{
+			builder.append("=").append(Position.getSymbol(Position.makePiece(Position.WHITE, Moves.getPromotionType(move))));
+		} else
+		{
+			builder.append(Moves.isCapture(move) ? "x" : "-");
+			builder.append((char)('a' + Squares.getFile(Moves.getTo(move)))).append(Squares.getRank(Moves.getTo(move)) + 1);
+		}
+		return builder.toString();
+	}
+
+}
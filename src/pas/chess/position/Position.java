@@ -0,0 +1,439 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.search.Zobrist;
+
+
+/**
+ * A single mutable chess position for the search to walk the tree with. Instead of copying a Game for every
+ * child, the search calls makeMove(move) on the way down and unmakeMove() on the way back up. Everything
+ * makeMove destroys (the captured piece, the castling rights, the hash key) is pushed on an undo stack of
+ * preallocated arrays, so neither direction allocates.
+ *
+ * The board is kept twice: a 64-entry mailbox of piece codes (color * NUM_PIECE_TYPES + type, or EMPTY) to
+ * answer "what is on this square", and bitboards (one long per piece code, per color, and for all pieces, see
+ * Bitboards) to answer attack questions with a few bit operations. Squares are numbered as in Squares. Piece
+ * types use the order of edu.bu.chess.game.piece.PieceType so type == ordinal().
+ * The Zobrist key (and the pawn-only key) is kept up to date incrementally, and so are the piece counts (per piece code, and of pawns
+ * per rank) the heuristics read at every leaf, so that evaluating a leaf does not have to count anything.
+ */
+public class Position
+    extends Object
+{
+
+	public static final int WHITE = 0;
+	public static final int BLACK = 1;
+	public static final int NUM_COLORS = 2;
+
+	public static final int KING = 0;
+	public static final int QUEEN = 1;
+	public static final int BISHOP = 2;
+	public static final int KNIGHT = 3;
+	public static final int ROOK = 4;
+	public static final int PAWN = 5;
+	public static final int NUM_PIECE_TYPES = 6;
+
+	public static final int EMPTY = -1;
+
+	public static final int WHITE_KINGSIDE = 1;
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+	public static final int ALL_CASTLING_RIGHTS = 15;
+
+	/**
+	 * Deepest line (in plies from the position we were created from) that can be made before unmaking
+	 */
+	public static final int MAX_PLY = 512;
+
+	private static final String SYMBOLS = "KQBNRPkqbnrp";
+
+	/**
+	 * castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to] on every move: moving the king, or moving
+	 * or capturing a rook, gives up the matching rights
+	 */
+	private static final int[] CASTLING_MASKS = new int[Squares.NUM_SQUARES];
+	static
+	{
+		Arrays.fill(CASTLING_MASKS, ALL_CASTLING_RIGHTS);
+		CASTLING_MASKS[Squares.getSquare(4, 0)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+		CASTLING_MASKS[Squares.getSquare(7, 0)] &= ~WHITE_KINGSIDE;
+		CASTLING_MASKS[Squares.getSquare(0, 0)] &= ~WHITE_QUEENSIDE;
+		CASTLING_MASKS[Squares.getSquare(4, 7)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+		CASTLING_MASKS[Squares.getSquare(7, 7)] &= ~BLACK_KINGSIDE;
+		CASTLING_MASKS[Squares.getSquare(0, 7)] &= ~BLACK_QUEENSIDE;
+	}
+
+	private final int[] board;
+	private final long[] pieceBoards;
+	private final long[] colorBoards;
+	private long occupancy;
+	private final int[] kingSquares;
+	private final int[] playerIDs;
+	private int sideToMove;
+	private int castlingRights;
+	private long key;
+	private long pawnKey;
+
+	// incrementally kept counts: pieceCounts[piece], pawnRankCounts[color][rank]
+	private final int[] pieceCounts;
+	private final int[][] pawnRankCounts;
+
+	// undo stack
+	private int ply;
+	private final int[] movesMade;
+	private final int[] capturedPieces;
+	private final int[] previousCastlingRights;
+	private final long[] previousKeys;
+
+	/**
+	 * An empty board with white to move. Use putPiece(...) and setSideToMove(...)/setCastlingRights(...) to set it up
+	 */
+	public Position()
+	{
+		this.board = new int[Squares.NUM_SQUARES];
+		Arrays.fill(this.board, Position.EMPTY);
+		this.pieceBoards = new long[Position.NUM_COLORS * Position.NUM_PIECE_TYPES];
+		this.colorBoards = new long[Position.NUM_COLORS];
+		this.occupancy = Bitboards.EMPTY;
+		this.kingSquares = new int[] {-1, -1};
+		this.playerIDs = new int[] {Position.WHITE, Position.BLACK};
+		this.sideToMove = Position.WHITE;
+		this.castlingRights = 0;
+		this.key = Zobrist.getCastlingKey(0);
+		this.pawnKey = 0L;
+		this.pieceCounts = new int[Position.NUM_COLORS * Position.NUM_PIECE_TYPES];
+		this.pawnRankCounts = new int[Position.NUM_COLORS][8];
+
+		this.ply = 0;
+		this.movesMade = new int[Position.MAX_PLY];
+		this.capturedPieces = new int[Position.MAX_PLY];
+		this.previousCastlingRights = new int[Position.MAX_PLY];
+		this.previousKeys = new long[Position.MAX_PLY];
+	}
+
+	/**
+	 * A copy of the current position (not of the undo stack), e.g. for another search thread
+	 */
+	public Position copy()
+	{
+		Position copy = new Position();
+		System.arraycopy(this.board, 0, copy.board, 0, Squares.NUM_SQUARES);
+		System.arraycopy(this.pieceBoards, 0, copy.pieceBoards, 0, this.pieceBoards.length);
+		System.arraycopy(this.colorBoards, 0, copy.colorBoards, 0, Position.NUM_COLORS);
+		copy.occupancy = this.occupancy;
+		System.arraycopy(this.kingSquares, 0, copy.kingSquares, 0, Position.NUM_COLORS);
+		System.arraycopy(this.playerIDs, 0, copy.playerIDs, 0, Position.NUM_COLORS);
+		copy.sideToMove = this.sideToMove;
+		copy.castlingRights = this.castlingRights;
+		copy.key = this.key;
+		copy.pawnKey = this.pawnKey;
+		System.arraycopy(this.pieceCounts, 0, copy.pieceCounts, 0, this.pieceCounts.length);
+		for(int color = 0; color < Position.NUM_COLORS; ++color)
+		{
+			System.arraycopy(this.pawnRankCounts[color], 0, copy.pawnRankCounts[color], 0, 8);
+		}
+		return copy;
+	}
+
+	public static int makePiece(int color, int type) { return color * Position.NUM_PIECE_TYPES + type; }
+	public static int getColor(int piece) { return piece / Position.NUM_PIECE_TYPES; }
+	public static int getType(int piece) { return piece % Position.NUM_PIECE_TYPES; }
+	public static int getOtherColor(int color) { return color ^ 1; }
+	public static char getSymbol(int piece) { return piece == Position.EMPTY ? '.' : SYMBOLS.charAt(piece); }
+
+	public int getPiece(int square) { return this.board[square]; }
+	public long getPieceBoard(int piece) { return this.pieceBoards[piece]; }
+	public long getPieceBoard(int color, int type) { return this.pieceBoards[Position.makePiece(color, type)]; }
+	public long getColorBoard(int color) { return this.colorBoards[color]; }
+	public long getOccupancy() { return this.occupancy; }
+	public int getKingSquare(int color) { return this.kingSquares[color]; }
+	public int getNumPieces(int color) { return Long.bitCount(this.colorBoards[color]); }
+	public int getNumPieces(int color, int type) { return this.pieceCounts[Position.makePiece(color, type)]; }
+	public int getNumPawnsOnRank(int color, int rank) { return this.pawnRankCounts[color][rank]; }
+	public int getSideToMove() { return this.sideToMove; }
+	public int getCastlingRights() { return this.castlingRights; }
+	public long getKey() { return this.key; }
+	public long getPawnKey() { return this.pawnKey; }
+	public int getPly() { return this.ply; }
+
+	/**
+	 * The library's Player.getPlayerID() of each color. Only the heuristics care about these
+	 */
+	public int getPlayerID(int color) { return this.playerIDs[color]; }
+	public void setPlayerID(int color, int playerID) { this.playerIDs[color] = playerID; }
+
+	public boolean isEmpty(int square) { return this.board[square] == Position.EMPTY; }
+
+	public void setSideToMove(int color)
+	{
+		if(color != this.sideToMove)
+		{
+			this.sideToMove = color;
+			this.key ^= Zobrist.getBlackToMoveKey();
+		}
+	}
+
+	public void setCastlingRights(int castlingRights)
+	{
+		this.key ^= Zobrist.getCastlingKey(this.castlingRights) ^ Zobrist.getCastlingKey(castlingRights);
+		this.castlingRights = castlingRights;
+	}
+
+	public void putPiece(int square, int piece)
+	{
+		long bit = 1L << square;
+		this.board[square] = piece;
+		this.pieceBoards[piece] |= bit;
+		this.colorBoards[Position.getColor(piece)] |= bit;
+		this.occupancy |= bit;
+		this.key ^= Zobrist.getPieceSquareKey(piece, square);
+		this.pieceCounts[piece] += 1;
+		if(Position.getType(piece) == Position.KING)
+		{
+			this.kingSquares[Position.getColor(piece)] = square;
+		} else if(Position.getType(piece) == Position.PAWN)
+		{
+			this.pawnRankCounts[Position.getColor(piece)][Squares.getRank(square)] += 1;
+			this.pawnKey ^= Zobrist.getPieceSquareKey(piece, square);
+		}
+	}
+
+	public void removePiece(int square)
+	{
+		int piece = this.board[square];
+		long bit = 1L << square;
+		this.board[square] = Position.EMPTY;
+		this.pieceBoards[piece] &= ~bit;
+		this.colorBoards[Position.getColor(piece)] &= ~bit;
+		this.occupancy &= ~bit;
+		this.key ^= Zobrist.getPieceSquareKey(piece, square);
+		this.pieceCounts[piece] -= 1;
+		if(Position.getType(piece) == Position.PAWN)
+		{
+			this.pawnRankCounts[Position.getColor(piece)][Squares.getRank(square)] -= 1;
+			this.pawnKey ^= Zobrist.getPieceSquareKey(piece, square);
+		}
+	}
+
+	private void movePiece(int from, int to)
+	{
+		int piece = this.board[from];
+		long bits = (1L << from) | (1L << to);
+		this.board[from] = Position.EMPTY;
+		this.board[to] = piece;
+		this.pieceBoards[piece] ^= bits;
+		this.colorBoards[Position.getColor(piece)] ^= bits;
+		this.occupancy ^= bits;
+		this.key ^= Zobrist.getPieceSquareKey(piece, from) ^ Zobrist.getPieceSquareKey(piece, to);
+		if(Position.getType(piece) == Position.KING)
+		{
+			this.kingSquares[Position.getColor(piece)] = to;
+		} else if(Position.getType(piece) == Position.PAWN)
+		{
+			int[] rankCounts = this.pawnRankCounts[Position.getColor(piece)];
+			rankCounts[Squares.getRank(from)] -= 1;
+			rankCounts[Squares.getRank(to)] += 1;
+			this.pawnKey ^= Zobrist.getPieceSquareKey(piece, from) ^ Zobrist.getPieceSquareKey(piece, to);
+		}
+	}
+
+	/**
+	 * The rook's squares for a castle, given the king's from and to squares
+	 */
+	public static int getCastleRookFrom(int kingFrom, int kingTo) { return kingTo > kingFrom ? kingFrom + 3 : kingFrom - 4; }
+	public static int getCastleRookTo(int kingFrom, int kingTo) { return (kingFrom + kingTo) >> 1; }
+
+	/**
+	 * Play a (pseudo-legal) move for the side to move
+	 * @param move a move from MoveGenerator
+	 */
+	public void makeMove(int move)
+	{
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+
+		this.movesMade[this.ply] = move;
+		this.capturedPieces[this.ply] = Position.EMPTY;
+		this.previousCastlingRights[this.ply] = this.castlingRights;
+		this.previousKeys[this.ply] = this.key;
+
+		switch(Moves.getKind(move))
+		{
+			case Moves.MOVEMENT:
+				this.movePiece(from, to);
+				break;
+			case Moves.CAPTURE:
+				this.capturedPieces[this.ply] = this.board[to];
+				this.removePiece(to);
+				this.movePiece(from, to);
+				break;
+			case Moves.CASTLE:
+				this.movePiece(from, to);
+				this.movePiece(Position.getCastleRookFrom(from, to), Position.getCastleRookTo(from, to));
+				break;
+			case Moves.PROMOTION:
+				this.removePiece(from);
+				this.putPiece(from, Position.makePiece(this.sideToMove, Moves.getPromotionType(move)));
+				break;
+			default:
+				break;
+		}
+		this.ply += 1;
+
+		int castlingRights = this.castlingRights & CASTLING_MASKS[from] & CASTLING_MASKS[to];
+		if(castlingRights != this.castlingRights)
+		{
+			this.setCastlingRights(castlingRights);
+		}
+		this.sideToMove ^= 1;
+		this.key ^= Zobrist.getBlackToMoveKey();
+	}
+
+	/**
+	 * Pass: only the side to move changes. Not a legal move in chess, but the search uses it (null-move pruning)
+	 * to ask what the opponent could do if we did nothing. Taken back with unmakeMove like any other move,
+	 * and recorded on the undo stack as Moves.NO_MOVE
+	 */
+	public void makeNullMove()
+	{
+		this.movesMade[this.ply] = Moves.NO_MOVE;
+		this.capturedPieces[this.ply] = Position.EMPTY;
+		this.previousCastlingRights[this.ply] = this.castlingRights;
+		this.previousKeys[this.ply] = this.key;
+		this.ply += 1;
+
+		this.sideToMove ^= 1;
+		this.key ^= Zobrist.getBlackToMoveKey();
+	}
+
+	/**
+	 * Take back the last move made with makeMove (or makeNullMove)
+	 */
+	public void unmakeMove()
+	{
+		this.ply -= 1;
+		int move = this.movesMade[this.ply];
+		int from = Moves.getFrom(move);
+		int to = Moves.getTo(move);
+		this.sideToMove ^= 1;
+
+		switch(move == Moves.NO_MOVE ? -1 : Moves.getKind(move))
+		{
+			case Moves.MOVEMENT:
+				this.movePiece(to, from);
+				break;
+			case Moves.CAPTURE:
+				this.movePiece(to, from);
+				this.putPiece(to, this.capturedPieces[this.ply]);
+				break;
+			case Moves.CASTLE:
+				this.movePiece(to, from);
+				this.movePiece(Position.getCastleRookTo(from, to), Position.getCastleRookFrom(from, to));
+				break;
+			case Moves.PROMOTION:
+				this.removePiece(from);
+				this.putPiece(from, Position.makePiece(this.sideToMove, Position.PAWN));
+				break;
+			default:
+				break;
+		}
+
+		this.castlingRights = this.previousCastlingRights[this.ply];
+		this.key = this.previousKeys[this.ply];
+	}
+
+	public int getLastMove() { return this.ply > 0 ? this.movesMade[this.ply - 1] : Moves.NO_MOVE; }
+	public int getLastCapturedPiece() { return this.ply > 0 ? this.capturedPieces[this.ply - 1] : Position.EMPTY; }
+	public boolean isLastMoveNull() { return this.ply > 0 && this.movesMade[this.ply - 1] == Moves.NO_MOVE; }
+
+	/**
+	 * Every piece of the given color that attacks square, assuming the board holds the pieces in occupancy.
+	 * Same notion of attack as the library's Piece.getAllCaptureMoves: pawns attack diagonally forward,
+	 * sliders stop at the first piece.
+	 */
+	public long getAttackers(int square, int byColor, long occupancy)
+	{
+		long queens = this.getPieceBoard(byColor, Position.QUEEN);
+		return (Bitboards.getPawnAttacks(Position.getOtherColor(byColor), square) & this.getPieceBoard(byColor, Position.PAWN))
+			| (Bitboards.getKnightAttacks(square) & this.getPieceBoard(byColor, Position.KNIGHT))
+			| (Bitboards.getKingAttacks(square) & this.getPieceBoard(byColor, Position.KING))
+			| (Bitboards.getBishopAttacks(square, occupancy) & (this.getPieceBoard(byColor, Position.BISHOP) | queens))
+			| (Bitboards.getRookAttacks(square, occupancy) & (this.getPieceBoard(byColor, Position.ROOK) | queens));
+	}
+
+	/**
+	 * Is square attacked by any piece of the given color?
+	 */
+	public boolean isSquareAttacked(int square, int byColor)
+	{
+		// a pawn of byColor attacks square iff a pawn of the other color on square would attack the pawn
+		if((Bitboards.getPawnAttacks(Position.getOtherColor(byColor), square) & this.getPieceBoard(byColor, Position.PAWN)) != 0
+			|| (Bitboards.getKnightAttacks(square) & this.getPieceBoard(byColor, Position.KNIGHT)) != 0
+			|| (Bitboards.getKingAttacks(square) & this.getPieceBoard(byColor, Position.KING)) != 0)
+		{
+			return true;
+		}
+		long queens = this.getPieceBoard(byColor, Position.QUEEN);
+		return (Bitboards.getBishopAttacks(square, this.occupancy) & (this.getPieceBoard(byColor, Position.BISHOP) | queens)) != 0
+			|| (Bitboards.getRookAttacks(square, this.occupancy) & (this.getPieceBoard(byColor, Position.ROOK) | queens)) != 0;
+	}
+
+	/**
+	 * Every square attacked by the piece on square (which must not be empty)
+	 */
+	public long getAttacks(int square)
+	{
+		int piece = this.board[square];
+		return Position.getType(piece) == Position.PAWN
+			? Bitboards.getPawnAttacks(Position.getColor(piece), square)
+			: Bitboards.getAttacks(Position.getType(piece), square, this.occupancy);
+	}
+
+	public boolean isInCheck(int color)
+	{
+		return this.kingSquares[color] >= 0
+			&& this.isSquareAttacked(this.kingSquares[color], Position.getOtherColor(color));
+	}
+
+	/**
+	 * Does color have anything besides its king and pawns? Without such a piece, zugzwang (every move makes
+	 * things worse) is common enough that the search must not assume passing is the worst it could do
+	 */
+	public boolean hasNonPawnMaterial(int color)
+	{
+		return (this.colorBoards[color] & ~(this.getPieceBoard(color, Position.KING)
+			| this.getPieceBoard(color, Position.PAWN))) != 0;
+	}
+
+	/**
+	 * The library declares a draw as soon as both players are down to a single piece
+	 */
+	public boolean isLoneKings()
+	{
+		return this.getNumPieces(Position.WHITE) == 1 && this.getNumPieces(Position.BLACK) == 1;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder builder = new StringBuilder();
+		for(int rank = 7; rank >= 0; --rank)
+		{
+			for(int file = 0; file < 8; ++file)
+			{
+				builder.append(Position.getSymbol(this.board[Squares.getSquare(file, rank)]));
+			}
+			builder.append('\n');
+		}
+		builder.append(this.sideToMove == Position.WHITE ? "white" : "black").append(" to move, castling=")
+			.append(this.castlingRights);
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,139 @@
+package src.pas.chess.position;
+
+
+// SYSTEM IMPORTS
+import edu.bu.chess.utils.Coordinate;
+
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Square numbering and precomputed move tables shared by Position, MoveGenerator, and the heuristics.
+ *
+ * Squares are numbered 0..63 from white's point of view: a1 = 0, h1 = 7, a8 = 56, h8 = 63 (file = square & 7,
+ * rank = square >> 3). In the SEPIA board white starts at the bottom (y = 8) and moves towards y = 1, so
+ * square = (8 - y) * 8 + (x - 1) and a white pawn moves +8.
+ */
+public final class Squares
+    extends Object
+{
+
+	public static final int NUM_SQUARES = 64;
+
+	// ray directions, in the same order as edu.cwru.sepia.util.Direction (white's "north" is +8)
+	public static final int NORTH = 0;
+	public static final int NORTHEAST = 1;
+	public static final int EAST = 2;
+	public static final int SOUTHEAST = 3;
+	public static final int SOUTH = 4;
+	public static final int SOUTHWEST = 5;
+	public static final int WEST = 6;
+	public static final int NORTHWEST = 7;
+	public static final int NUM_DIRECTIONS = 8;
+
+	private static final int[] FILE_DELTAS = new int[] { 0,  1, 1,  1,  0, -1, -1, -1};
+	private static final int[] RANK_DELTAS = new int[] { 1,  1, 0, -1, -1, -1,  0,  1};
+	private static final int[][] KNIGHT_DELTAS = new int[][] {{1, 2}, {2, 1}, {2, -1}, {1, -2},
+		{-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+
+	/**
+	 * RAYS[square][direction] lists the squares from (but excluding) square to the edge of the board
+	 */
+	private static final int[][][] RAYS = new int[NUM_SQUARES][NUM_DIRECTIONS][];
+	private static final int[][] KNIGHT_TARGETS = new int[NUM_SQUARES][];
+	private static final int[][] KING_TARGETS = new int[NUM_SQUARES][];
+	private static final int[][][] PAWN_CAPTURE_TARGETS = new int[2][NUM_SQUARES][];
+
+	static
+	{
+		for(int square = 0; square < NUM_SQUARES; ++square)
+		{
+			int file = Squares.getFile(square);
+			int rank = Squares.getRank(square);
+
+			int[] kingTargets = new int[NUM_DIRECTIONS];
+			int numKingTargets = 0;
+			for(int direction = 0; direction < NUM_DIRECTIONS; ++direction)
+			{
+				int[] ray = new int[7];
+				int length = 0;
+				int toFile = file + FILE_DELTAS[direction];
+				int toRank = rank + RANK_DELTAS[direction];
+				while(Squares.isOnBoard(toFile, toRank))
+				{
+					ray[length++] = Squares.getSquare(toFile, toRank);
+					toFile += FILE_DELTAS[direction];
+					toRank += RANK_DELTAS[direction];
+				}
+				RAYS[square][direction] = Arrays.copyOf(ray, length);
+				if(length > 0)
+				{
+					kingTargets[numKingTargets++] = ray[0];
+				}
+			}
+			KING_TARGETS[square] = Arrays.copyOf(kingTargets, numKingTargets);
+
+			int[] knightTargets = new int[KNIGHT_DELTAS.length];
+			int numKnightTargets = 0;
+			for(int[] delta : KNIGHT_DELTAS)
+			{
+				if(Squares.isOnBoard(file + delta[0], rank + delta[1]))
+				{
+					knightTargets[numKnightTargets++] = Squares.getSquare(file + delta[0], rank + delta[1]);
+				}
+			}
+			KNIGHT_TARGETS[square] = Arrays.copyOf(knightTargets, numKnightTargets);
+
+			for(int color = 0; color < 2; ++color)
+			{
+				int forward = color == Position.WHITE ? 1 : -1;
+				int[] pawnTargets = new int[2];
+				int numPawnTargets = 0;
+				for(int side : new int[] {-1, 1}) // west first, the same order the library generates them in
+				{
+					if(Squares.isOnBoard(file + side, rank + forward))
+					{
+						pawnTargets[numPawnTargets++] = Squares.getSquare(file + side, rank + forward);
+					}
+				}
+				PAWN_CAPTURE_TARGETS[color][square] = Arrays.copyOf(pawnTargets, numPawnTargets);
+			}
+		}
+	}
+
+	private Squares() {}
+
+	public static int getFile(int square) { return square & 7; }
+	public static int getRank(int square) { return square >> 3; }
+	public static int getSquare(int file, int rank) { return (rank << 3) | file; }
+	public static boolean isOnBoard(int file, int rank) { return file >= 0 && file < 8 && rank >= 0 && rank < 8; }
+
+	/**
+	 * Conversions to and from the SEPIA coordinates that the library uses
+	 */
+	public static int getSquare(Coordinate coordinate)
+	{
+		return (8 - coordinate.getYPosition()) * 8 + (coordinate.getXPosition() - 1);
+	}
+	public static int getXPosition(int square) { return Squares.getFile(square) + 1; }
+	public static int getYPosition(int square) { return 8 - Squares.getRank(square); }
+	public static Coordinate getCoordinate(int square)
+	{
+		return new Coordinate(Squares.getXPosition(square), Squares.getYPosition(square));
+	}
+
+	public static int[] getRay(int square, int direction) { return RAYS[square][direction]; }
+	public static int[] getKnightTargets(int square) { return KNIGHT_TARGETS[square]; }
+	public static int[] getKingTargets(int square) { return KING_TARGETS[square]; }
+
+	/**
+	 * The squares a pawn of the given color standing on square attacks
+	 */
+	public static int[] getPawnCaptureTargets(int color, int square) { return PAWN_CAPTURE_TARGETS[color][square]; }
+
+	public static boolean isDiagonal(int direction) { return (direction & 1) == 1; }
+
+}
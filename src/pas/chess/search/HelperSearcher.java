@@ -0,0 +1,85 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+
+
+/**
+ * One helper thread of a Lazy SMP search. Every helper searches the same root as the main search, on its own
+ * copy of the Position, with iterative deepening until it is stopped. Helpers never report a move: all they
+ * contribute is what they write into the transposition table they share with the main search, which then
+ * finds more cutoffs and better first moves.
+ *
+ * To keep the helpers from all searching the same depth in lock step, helper i skips some depths following
+ * the usual Lazy SMP pattern: ((depth + SKIP_PHASE[i]) / SKIP_SIZE[i]) odd means that depth is skipped.
+ */
+public class HelperSearcher
+    extends Object
+    implements Runnable
+{
+
+	private static final int[] SKIP_SIZE  = new int[] {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+	private static final int[] SKIP_PHASE = new int[] {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+	private final PositionSearcher positionSearcher;
+	private final Position position;
+	private final int maxColor;
+	private final int maxDepth;
+	private final int helperIdx;
+
+	/**
+	 * @param transpositionTable shared with the main search and the other helpers
+	 * @param position the root, this helper keeps its own copy
+	 * @param maxColor
+	 * @param maxDepth the deepest iteration to search
+	 * @param helperIdx 0 for the first helper, 1 for the next, ...
+	 */
+	public HelperSearcher(TranspositionTable transpositionTable, Position position, int maxColor, int maxDepth,
+                          int helperIdx)
+	{
+		this.positionSearcher = new PositionSearcher(transpositionTable);
+		this.position = position.copy();
+		this.maxColor = maxColor;
+		this.maxDepth = maxDepth;
+		this.helperIdx = helperIdx;
+	}
+
+	public PositionSearcher getPositionSearcher() { return this.positionSearcher; }
+	public Position getPosition() { return this.position; }
+	public int getMaxColor() { return this.maxColor; }
+	public int getMaxDepth() { return this.maxDepth; }
+	public int getHelperIdx() { return this.helperIdx; }
+
+	public void requestStop() { this.getPositionSearcher().requestStop(); }
+
+	private boolean isSkipped(int depth)
+	{
+		int patternIdx = this.getHelperIdx() % SKIP_SIZE.length;
+		return ((depth + SKIP_PHASE[patternIdx]) / SKIP_SIZE[patternIdx]) % 2 != 0;
+	}
+
+	@Override
+	public void run()
+	{
+		for(int depth = 1; depth <= this.getMaxDepth() && !this.getPositionSearcher().isStopRequested(); ++depth)
+		{
+			if(depth < this.getMaxDepth() && this.isSkipped(depth))
+			{
+				continue;
+			}
+			try
+			{
+				this.getPositionSearcher().search(this.getPosition(), this.getMaxColor(), depth,
+					Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+			} catch(SearchStoppedException e)
+			{
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,599 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.function.BooleanSupplier;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.moveorder.CustomMoveOrderer;
+import src.pas.chess.moveorder.MovePicker;
+import src.pas.chess.moveorder.StaticExchangeEvaluator;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * The alpha-beta search itself, run on a single mutable Position with makeMove/unmakeMove instead of a tree of
+ * DFSTreeNodes that each own a copied Game. Move lists live in per-ply int[] buffers that are allocated once
+ * and reused, so searching a node does not allocate. Each ply also owns an AttackMap that the heuristic and the
+ * move orderer share, so a node's attacks are worked out at most once, and a MovePicker that generates the
+ * node's moves in stages, only as far as the search gets before a cutoff.
+ *
+ * Values are from the max player's point of view and match what minimax over DFSTreeNodes computes:
+ * a side without legal moves scores -Double.MAX_VALUE if the max player is in check and +Double.MAX_VALUE
+ * otherwise, two lone kings score 0, and positions at depth 0 get the evaluator's value (by default
+ * Evaluator.CUSTOM_HEURISTICS, i.e. CustomHeuristics.getMaxPlayerHeuristicValue).
+ *
+ * Unless it is turned off (setMaxQuiescencePlies(0)), positions at depth 0 are not scored as they are but
+ * resolved by a quiescence search first: only captures and promotions are tried, each side may "stand pat" on
+ * the heuristic value instead of capturing, and captures that could not lift the score to alpha even if the
+ * captured piece came for free (delta pruning) or that lose material in the exchange (StaticExchangeEvaluator)
+ * are skipped. This keeps a leaf from being scored in the middle
+ * of an exchange, but of course the values no longer match plain minimax.
+ *
+ * Every move but the first is searched with principal variation search (see scout), which does not change any
+ * value: callers may pass any window, and get back exact values inside it and bounds outside of it.
+ *
+ * Two selective techniques trade that exactness for depth, and are off unless turned on:
+ *     - null-move pruning (see tryNullMove): if the side to move could pass and still be at least at its bound
+ *       after a reduced search, the node is cut off without searching any real move
+ *     - late move reductions: quiet moves that come late in the ordering are first searched LMR_REDUCTION plies
+ *       shallower with a null window, and only searched again to full depth if they beat the bound after all
+ */
+public class PositionSearcher
+    extends Object
+    implements Searcher
+{
+
+	private final TranspositionTable transpositionTable;
+	private final TranspositionTable.Entry ttEntry;
+
+	public static final int DEFAULT_MAX_QUIESCENCE_PLIES = 8;
+
+	// null-move pruning: only with at least NULL_MOVE_MIN_DEPTH plies left, and the pass is searched
+	// NULL_MOVE_REDUCTION plies shallower than the real moves (one more from NULL_MOVE_DEEP_DEPTH plies on)
+	private static final int NULL_MOVE_MIN_DEPTH = 3;
+	private static final int NULL_MOVE_REDUCTION = 2;
+	private static final int NULL_MOVE_DEEP_DEPTH = 7;
+
+	// late move reductions: with at least LMR_MIN_DEPTH plies left, every quiet move after the first
+	// LMR_MIN_MOVES searched moves is reduced by LMR_REDUCTION plies (one more after LMR_DEEP_MOVES moves
+	// with LMR_DEEP_DEPTH plies left)
+	private static final int LMR_MIN_DEPTH = 3;
+	private static final int LMR_MIN_MOVES = 3;
+	private static final int LMR_REDUCTION = 1;
+	private static final int LMR_DEEP_MOVES = 8;
+	private static final int LMR_DEEP_DEPTH = 6;
+
+	private Evaluator evaluator;
+	private double deltaMargin; // the evaluator's, looked up once instead of at every capture
+	private int maxQuiescencePlies;
+	private boolean nullMovePruning;
+	private boolean lateMoveReductions;
+
+	// null unless the agent asked for metrics, so counting costs nothing by default
+	private SearchMetrics metrics;
+
+	// moveLists[ply] and moveScores[ply] are the buffers used by the node ply moves below the root
+	private int[][] moveLists;
+	private int[][] moveScores;
+	private AttackMap[] attackMaps;
+	private MovePicker[] movePickers;
+
+	// killers and history, learned from the cutoffs of every search this searcher runs
+	private final CustomMoveOrderer moveOrderer;
+
+	private Position position;
+	private int maxColor;
+	private int bestMove;
+	private long numNodes;
+	private volatile boolean stopRequested;
+
+	// an extra stop condition owned by whoever runs this searcher (e.g. a parallel search cancelling a subtree),
+	// polled every STOP_POLL_INTERVAL nodes since it may be more expensive than reading a flag. The thread's
+	// interrupt flag (set when a SearchScheduler cancels the search) is polled at the same interval
+	private BooleanSupplier externalStop;
+	private static final long STOP_POLL_INTERVAL = 1024;
+
+	public PositionSearcher(TranspositionTable transpositionTable)
+	{
+		this.transpositionTable = transpositionTable;
+		this.ttEntry = new TranspositionTable.Entry();
+		this.moveLists = new int[0][];
+		this.moveScores = new int[0][];
+		this.attackMaps = new AttackMap[0];
+		this.movePickers = new MovePicker[0];
+		this.moveOrderer = new CustomMoveOrderer();
+		this.evaluator = Evaluator.CUSTOM_HEURISTICS;
+		this.deltaMargin = this.evaluator.getDeltaMargin();
+		this.maxQuiescencePlies = PositionSearcher.DEFAULT_MAX_QUIESCENCE_PLIES;
+		this.nullMovePruning = false;
+		this.lateMoveReductions = false;
+		this.metrics = null;
+		this.position = null;
+		this.maxColor = Position.WHITE;
+		this.bestMove = Moves.NO_MOVE;
+		this.numNodes = 0;
+		this.stopRequested = false;
+		this.externalStop = null;
+	}
+
+	public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+	public CustomMoveOrderer getMoveOrderer() { return this.moveOrderer; }
+	public Position getPosition() { return this.position; }
+	public int getMaxColor() { return this.maxColor; }
+	@Override
+	public long getNumNodes() { return this.numNodes; }
+	@Override
+	public boolean isStopRequested() { return this.stopRequested; }
+	public Evaluator getEvaluator() { return this.evaluator; }
+	public int getMaxQuiescencePlies() { return this.maxQuiescencePlies; }
+	public boolean usesNullMovePruning() { return this.nullMovePruning; }
+	public boolean usesLateMoveReductions() { return this.lateMoveReductions; }
+	public SearchMetrics getMetrics() { return this.metrics; }
+
+	/**
+	 * How many captures deep quiescence search may go below depth 0. 0 turns quiescence search off, so that
+	 * depth 0 positions get the plain heuristic value (what minimax would compute)
+	 */
+	@Override
+	public void setMaxQuiescencePlies(int maxQuiescencePlies) { this.maxQuiescencePlies = Math.max(0, maxQuiescencePlies); }
+	@Override
+	public void setEvaluator(Evaluator evaluator)
+	{
+		this.evaluator = evaluator;
+		this.deltaMargin = evaluator.getDeltaMargin();
+	}
+	@Override
+	public void setNullMovePruning(boolean nullMovePruning) { this.nullMovePruning = nullMovePruning; }
+	@Override
+	public void setLateMoveReductions(boolean lateMoveReductions) { this.lateMoveReductions = lateMoveReductions; }
+	@Override
+	public void setMetrics(SearchMetrics metrics) { this.metrics = metrics; }
+
+	/**
+	 * The best move found at the root by the last call to search (Moves.NO_MOVE if the root had no moves)
+	 */
+	@Override
+	public int getBestMove() { return this.bestMove; }
+
+	/**
+	 * Make a running search throw SearchStoppedException as soon as possible
+	 */
+	@Override
+	public void requestStop() { this.stopRequested = true; }
+
+	/**
+	 * Also stop (with SearchStoppedException) once externalStop returns true. null removes the condition
+	 */
+	public void setExternalStop(BooleanSupplier externalStop) { this.externalStop = externalStop; }
+
+	private void checkStop()
+	{
+		if(this.stopRequested
+			|| (this.numNodes % STOP_POLL_INTERVAL == 0 && (Thread.currentThread().isInterrupted()
+				|| (this.externalStop != null && this.externalStop.getAsBoolean()))))
+		{
+			throw new SearchStoppedException();
+		}
+	}
+
+	private void ensureCapacity(int numPlies)
+	{
+		if(this.moveLists.length < numPlies)
+		{
+			int[][] moveLists = new int[numPlies][];
+			int[][] moveScores = new int[numPlies][];
+			AttackMap[] attackMaps = new AttackMap[numPlies];
+			MovePicker[] movePickers = new MovePicker[numPlies];
+			for(int ply = 0; ply < numPlies; ++ply)
+			{
+				moveLists[ply] = ply < this.moveLists.length ? this.moveLists[ply] : new int[Moves.MAX_MOVES];
+				moveScores[ply] = ply < this.moveScores.length ? this.moveScores[ply] : new int[Moves.MAX_MOVES];
+				attackMaps[ply] = ply < this.attackMaps.length ? this.attackMaps[ply] : new AttackMap();
+				movePickers[ply] = ply < this.movePickers.length ? this.movePickers[ply] : new MovePicker(this.getMoveOrderer());
+			}
+			this.moveLists = moveLists;
+			this.moveScores = moveScores;
+			this.attackMaps = attackMaps;
+			this.movePickers = movePickers;
+		}
+		this.getMoveOrderer().ensureCapacity(numPlies);
+	}
+
+	/**
+	 * Alpha-beta search from the given position. If the search is stopped, the position is restored to what
+	 * it was when search was called before the SearchStoppedException is rethrown.
+	 * @param position the root, with the side to move to play. The position is modified during the search
+	 * @param maxColor the color of the max player
+	 * @param depth how many plies to search
+	 * @param alpha
+	 * @param beta
+	 * @return the (max player) value of the root, getBestMove() holds the move that achieves it
+	 */
+	@Override
+	public double search(Position position, int maxColor, int depth, double alpha, double beta)
+	{
+		this.position = position;
+		this.maxColor = maxColor;
+		this.bestMove = Moves.NO_MOVE;
+		this.ensureCapacity(depth + 1 + this.getMaxQuiescencePlies());
+
+		int rootPly = position.getPly();
+		try
+		{
+			return this.alphaBeta(depth, 0, alpha, beta);
+		} catch(SearchStoppedException e)
+		{
+			while(position.getPly() > rootPly)
+			{
+				position.unmakeMove();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * The value of a position whose side to move has no legal moves, same as DFSTreeNode gives it
+	 */
+	public static double getNoMovesUtility(Position position, int maxColor)
+	{
+		return position.isInCheck(maxColor) ? -Double.MAX_VALUE : Double.MAX_VALUE;
+	}
+
+	private double getNoMovesUtility()
+	{
+		return PositionSearcher.getNoMovesUtility(this.getPosition(), this.getMaxColor());
+	}
+
+	private double alphaBeta(int depth, int ply, double alpha, double beta)
+	{
+		this.checkStop();
+		this.numNodes += 1;
+		SearchMetrics metrics = this.getMetrics();
+		if(metrics != null)
+		{
+			metrics.countNode();
+		}
+
+		Position position = this.getPosition();
+		int[] moves = this.moveLists[ply];
+		AttackMap attackMap = this.attackMaps[ply];
+		attackMap.setPosition(position);
+
+		// terminal positions first, exactly like DFSTreeNode.isTerminal() is checked before the depth
+		if(depth <= 0)
+		{
+			if(!MoveGenerator.hasLegalMove(position, moves))
+			{
+				return this.getNoMovesUtility();
+			}
+			if(position.isLoneKings())
+			{
+				return 0.0;
+			}
+			if(this.getMaxQuiescencePlies() > 0)
+			{
+				return this.quiesce(0, ply, alpha, beta);
+			}
+			if(metrics != null)
+			{
+				metrics.countEvaluation();
+			}
+			return this.getEvaluator().getMaxPlayerHeuristicValue(attackMap, this.getMaxColor());
+		}
+
+		// a lone king always has a legal move, so this may be checked before knowing whether there are any
+		if(position.isLoneKings())
+		{
+			return 0.0;
+		}
+
+		// transposition table: only an entry searched to exactly this depth may answer for us (a deeper
+		// entry could disagree with what a depth-limited search returns), but any entry's move is a good
+		// first guess. The root is always searched so we always come back with a move.
+		// Positions without legal moves are never stored, so a hit also means the game is not over here
+		long key = position.getKey();
+		int ttMove = Moves.NO_MOVE;
+		boolean isTTHit = this.getTranspositionTable().probe(key, this.ttEntry);
+		if(metrics != null)
+		{
+			metrics.countTTProbe(isTTHit);
+		}
+		if(isTTHit)
+		{
+			ttMove = this.ttEntry.getMove();
+			if(ply > 0 && this.ttEntry.isCutoff(depth, alpha, beta))
+			{
+				return this.ttEntry.getScore();
+			}
+		}
+		double originalAlpha = alpha;
+		double originalBeta = beta;
+
+		int color = position.getSideToMove();
+		boolean isMaxPlayer = color == this.getMaxColor();
+		boolean isInCheck = (this.usesNullMovePruning() || this.usesLateMoveReductions()) && position.isInCheck(color);
+		if(this.usesNullMovePruning() && ply > 0 && depth >= NULL_MOVE_MIN_DEPTH && !isInCheck
+			&& !position.isLastMoveNull() && position.hasNonPawnMaterial(color))
+		{
+			double nullMoveValue = this.tryNullMove(depth, ply, alpha, beta, isMaxPlayer);
+			if(!Double.isNaN(nullMoveValue))
+			{
+				return nullMoveValue;
+			}
+		}
+
+		// moves come from the picker one at a time and are only checked for legality when they are played,
+		// so the moves after a cutoff are never even generated
+		MovePicker movePicker = this.movePickers[ply];
+		movePicker.reset(attackMap, ttMove, ply);
+
+		double bestValue = isMaxPlayer ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		int bestMove = Moves.NO_MOVE;
+		int numSearchedMoves = 0;
+		for(int move = movePicker.next(); move != Moves.NO_MOVE; move = movePicker.next())
+		{
+			position.makeMove(move);
+			if(position.isInCheck(color))
+			{
+				position.unmakeMove();
+				continue;
+			}
+			double value;
+			if(numSearchedMoves == 0)
+			{
+				value = this.alphaBeta(depth - 1, ply + 1, alpha, beta);
+			} else
+			{
+				// a late quiet move that neither gets us out of check nor gives check is probably no good
+				int reduction = 0;
+				if(this.usesLateMoveReductions() && depth >= LMR_MIN_DEPTH && numSearchedMoves >= LMR_MIN_MOVES
+					&& movePicker.isPickingQuiets() && !isInCheck && !position.isInCheck(position.getSideToMove()))
+				{
+					reduction = numSearchedMoves >= LMR_DEEP_MOVES && depth >= LMR_DEEP_DEPTH
+						? LMR_REDUCTION + 1
+						: LMR_REDUCTION;
+				}
+				value = this.scout(depth - 1, reduction, ply + 1, alpha, beta, isMaxPlayer);
+			}
+			position.unmakeMove();
+			numSearchedMoves += 1;
+
+			if(isMaxPlayer)
+			{
+				if(value > bestValue)
+				{
+					bestValue = value;
+					bestMove = move;
+				}
+				alpha = Math.max(alpha, bestValue);
+			} else
+			{
+				if(value < bestValue)
+				{
+					bestValue = value;
+					bestMove = move;
+				}
+				beta = Math.min(beta, bestValue);
+			}
+
+			if(alpha >= beta)
+			{
+				this.getMoveOrderer().recordCutoff(color, move, depth, ply);
+				if(metrics != null)
+				{
+					metrics.countCutoff(numSearchedMoves - 1);
+				}
+				break;
+			}
+		}
+		if(numSearchedMoves == 0)
+		{
+			return this.getNoMovesUtility();
+		}
+
+		int bound = TranspositionTable.EXACT;
+		if(bestValue <= originalAlpha)
+		{
+			bound = TranspositionTable.UPPER_BOUND;
+		} else if(bestValue >= originalBeta)
+		{
+			bound = TranspositionTable.LOWER_BOUND;
+		}
+		this.getTranspositionTable().store(key, depth, bound, bestValue, bestMove);
+
+		if(ply == 0)
+		{
+			this.bestMove = bestMove;
+		}
+		return bestValue;
+	}
+
+	/**
+	 * Principal variation search for every move after the first: with good ordering the first move is usually
+	 * the best, so first only ask whether this one beats it, with a null window around the bound the mover
+	 * has to improve (alpha for the max player, beta for the min player). That question is much cheaper to
+	 * answer, and only a move that does improve it (and stays inside the window) is searched again with the
+	 * full window to get its exact value. Without a reduction the result is always the same as with a full
+	 * window search.
+	 * @param reduction how many plies shallower the null window search may look (late move reductions). A
+	 *        reduced search that beats the bound is repeated at full depth before anything is believed
+	 * @param isMaxPlayer is the player who just moved (the parent's side to move) the max player
+	 */
+	private double scout(int depth, int reduction, int ply, double alpha, double beta, boolean isMaxPlayer)
+	{
+		if(isMaxPlayer)
+		{
+			double value = this.alphaBeta(depth - reduction, ply, alpha, Math.nextUp(alpha));
+			if(reduction > 0 && value > alpha)
+			{
+				value = this.alphaBeta(depth, ply, alpha, Math.nextUp(alpha));
+			}
+			return value > alpha && value < beta ? this.alphaBeta(depth, ply, alpha, beta) : value;
+		}
+		double value = this.alphaBeta(depth - reduction, ply, Math.nextDown(beta), beta);
+		if(reduction > 0 && value < beta)
+		{
+			value = this.alphaBeta(depth, ply, Math.nextDown(beta), beta);
+		}
+		return value < beta && value > alpha ? this.alphaBeta(depth, ply, alpha, beta) : value;
+	}
+
+	/**
+	 * Null-move pruning: let the side to move pass, and search the opponent's reply with a null window at the
+	 * bound the side to move has to reach (beta for the max player, alpha for the min player), a few plies
+	 * shallower than usual. Having the move is almost always worth something, so if even passing reaches the
+	 * bound, some real move would too and the node can be cut off right away.
+	 *
+	 * The exception is zugzwang, where every move makes things worse: the caller does not try this in check,
+	 * after another pass, or when the side to move has nothing but its king and pawns, where zugzwang is common.
+	 * Mate scores found after a pass are not trusted (the pass is not a real move), the bound is returned instead.
+	 * @return the value to cut the node off with, or NaN if the node has to be searched
+	 */
+	private double tryNullMove(int depth, int ply, double alpha, double beta, boolean isMaxPlayer)
+	{
+		// an open (or mate) bound cannot be reached by a pass
+		double bound = isMaxPlayer ? beta : alpha;
+		if(Math.abs(bound) >= Double.MAX_VALUE)
+		{
+			return Double.NaN;
+		}
+
+		int reduction = depth >= NULL_MOVE_DEEP_DEPTH ? NULL_MOVE_REDUCTION + 1 : NULL_MOVE_REDUCTION;
+		Position position = this.getPosition();
+		position.makeNullMove();
+		double value = isMaxPlayer
+			? this.alphaBeta(depth - 1 - reduction, ply + 1, Math.nextDown(beta), beta)
+			: this.alphaBeta(depth - 1 - reduction, ply + 1, alpha, Math.nextUp(alpha));
+		position.unmakeMove();
+
+		if(isMaxPlayer ? value >= beta : value <= alpha)
+		{
+			return Math.abs(value) == Double.MAX_VALUE ? bound : value;
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * An upper bound on how much playing move (a capture or promotion) can gain, for delta pruning
+	 */
+	private double getDeltaGain(int move)
+	{
+		if(Moves.isPromotion(move))
+		{
+			return StaticExchangeEvaluator.getPointValue(Moves.getPromotionType(move))
+				- StaticExchangeEvaluator.getPointValue(Position.PAWN) + this.deltaMargin;
+		}
+		return StaticExchangeEvaluator.getPointValue(Position.getType(this.getPosition().getPiece(Moves.getTo(move))))
+			+ this.deltaMargin;
+	}
+
+	/**
+	 * Captures and promotions only, from a position whose terminal checks alphaBeta has already done.
+	 * @param quiescencePly how many captures below depth 0 we are
+	 * @param ply distance from the root (indexes the per-ply buffers)
+	 */
+	private double quiesce(int quiescencePly, int ply, double alpha, double beta)
+	{
+		Position position = this.getPosition();
+		SearchMetrics metrics = this.getMetrics();
+		if(quiescencePly > 0)
+		{
+			this.checkStop();
+			this.numNodes += 1;
+			if(metrics != null)
+			{
+				metrics.countNode();
+				metrics.countQuiescenceNode();
+			}
+			if(position.isLoneKings())
+			{
+				return 0.0;
+			}
+		}
+
+		AttackMap attackMap = this.attackMaps[ply];
+		attackMap.setPosition(position);
+		if(metrics != null)
+		{
+			metrics.countEvaluation();
+		}
+		double standPat = this.getEvaluator().getMaxPlayerHeuristicValue(attackMap, this.getMaxColor());
+
+		// the side to move does not have to capture, so the static value bounds the node from its side
+		int color = position.getSideToMove();
+		boolean isMaxPlayer = color == this.getMaxColor();
+		if(isMaxPlayer)
+		{
+			if(standPat >= beta)
+			{
+				return standPat;
+			}
+			alpha = Math.max(alpha, standPat);
+		} else
+		{
+			if(standPat <= alpha)
+			{
+				return standPat;
+			}
+			beta = Math.min(beta, standPat);
+		}
+		if(quiescencePly >= this.getMaxQuiescencePlies())
+		{
+			return standPat;
+		}
+
+		int[] moves = this.moveLists[ply];
+		int numMoves = MoveGenerator.generatePseudoLegalCaptures(position, moves);
+		CustomMoveOrderer.order(attackMap, moves, numMoves, this.moveScores[ply], Moves.NO_MOVE);
+
+		double bestValue = standPat;
+		for(int moveIdx = 0; moveIdx < numMoves; ++moveIdx)
+		{
+			int move = moves[moveIdx];
+			double deltaGain = this.getDeltaGain(move);
+			if(isMaxPlayer ? standPat + deltaGain <= alpha : standPat - deltaGain >= beta)
+			{
+				continue;
+			}
+
+			// a capture that loses material in the exchange is not what resolves a position
+			if(StaticExchangeEvaluator.isLosingCapture(position, move))
+			{
+				continue;
+			}
+
+			// legality is only checked for the captures that get this far
+			position.makeMove(move);
+			if(position.isInCheck(color))
+			{
+				position.unmakeMove();
+				continue;
+			}
+			double value = this.quiesce(quiescencePly + 1, ply + 1, alpha, beta);
+			position.unmakeMove();
+
+			if(isMaxPlayer)
+			{
+				bestValue = Math.max(bestValue, value);
+				alpha = Math.max(alpha, bestValue);
+			} else
+			{
+				bestValue = Math.min(bestValue, value);
+				beta = Math.min(beta, bestValue);
+			}
+
+			if(alpha >= beta)
+			{
+				break;
+			}
+		}
+		return bestValue;
+	}
+
+}
@@ -0,0 +1,213 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.concurrent.atomic.LongAdder;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.EvaluationCache;
+
+
+/**
+ * Counters for what the searchers of one agent do, over the whole game: nodes, quiescence nodes, leaf
+ * evaluations, transposition table hits and misses, and beta cutoffs by the index of the child that caused them
+ * (child 0 is the first move searched, so a high share there means good move ordering). Every searcher thread
+ * (the main search, Lazy SMP helpers, ybw workers) counts into the same LongAdders, which stripe themselves
+ * across threads instead of contending on one value. snapshot() sums them up, and two snapshots subtract to the
+ * counts of whatever ran in between (e.g. one move).
+ *
+ * Searchers only count when they are given a SearchMetrics (Searcher.setMetrics), so without one the search
+ * costs nothing extra. The split nodes of the ybw searcher search their younger brothers all at once, so
+ * there is no "child that caused the cutoff" to count there: only its serial nodes count cutoffs.
+ */
+public class SearchMetrics
+    extends Object
+{
+
+	// cutoffs at this child index and later share the last counter
+	public static final int NUM_CUTOFF_CHILD_IDXS = 8;
+
+	/**
+	 * The counters at one point in time (or the difference between two such points, see minus)
+	 */
+	public static class Snapshot
+	    extends Object
+	{
+		private final long numNodes;
+		private final long numQuiescenceNodes;
+		private final long numEvaluations;
+		private final long numTTHits;
+		private final long numTTMisses;
+		private final long[] numCutoffsByChildIdx;
+		private final long numEvalCacheProbes;
+		private final long numEvalCacheHits;
+
+		public Snapshot(long numNodes, long numQuiescenceNodes, long numEvaluations, long numTTHits,
+                        long numTTMisses, long[] numCutoffsByChildIdx, long numEvalCacheProbes, long numEvalCacheHits)
+		{
+			this.numNodes = numNodes;
+			this.numQuiescenceNodes = numQuiescenceNodes;
+			this.numEvaluations = numEvaluations;
+			this.numTTHits = numTTHits;
+			this.numTTMisses = numTTMisses;
+			this.numCutoffsByChildIdx = numCutoffsByChildIdx;
+			this.numEvalCacheProbes = numEvalCacheProbes;
+			this.numEvalCacheHits = numEvalCacheHits;
+		}
+
+		public long getNumNodes() { return this.numNodes; }
+		public long getNumQuiescenceNodes() { return this.numQuiescenceNodes; }
+		public long getNumEvaluations() { return this.numEvaluations; }
+		public long getNumTTHits() { return this.numTTHits; }
+		public long getNumTTMisses() { return this.numTTMisses; }
+		public long getNumCutoffs(int childIdx) { return this.numCutoffsByChildIdx[childIdx]; }
+		public long getNumEvalCacheProbes() { return this.numEvalCacheProbes; }
+		public long getNumEvalCacheHits() { return this.numEvalCacheHits; }
+
+		public long getNumCutoffs()
+		{
+			long numCutoffs = 0;
+			for(long numChildCutoffs : this.numCutoffsByChildIdx)
+			{
+				numCutoffs += numChildCutoffs;
+			}
+			return numCutoffs;
+		}
+
+		/**
+		 * The fraction of transposition table probes that found the position (0 before the first probe)
+		 */
+		public double getTTHitRate() { return Snapshot.ratio(this.getNumTTHits(), this.getNumTTHits() + this.getNumTTMisses()); }
+
+		/**
+		 * The fraction of cutoffs caused by the first child searched (0 before the first cutoff)
+		 */
+		public double getFirstChildCutoffRate() { return Snapshot.ratio(this.getNumCutoffs(0), this.getNumCutoffs()); }
+
+		public double getEvalCacheHitRate() { return Snapshot.ratio(this.getNumEvalCacheHits(), this.getNumEvalCacheProbes()); }
+
+		private static double ratio(long numerator, long denominator)
+		{
+			return denominator == 0 ? 0.0 : (double)numerator / denominator;
+		}
+
+		/**
+		 * What was counted after other was taken, up to this one
+		 */
+		public Snapshot minus(Snapshot other)
+		{
+			long[] numCutoffsByChildIdx = new long[this.numCutoffsByChildIdx.length];
+			for(int childIdx = 0; childIdx < numCutoffsByChildIdx.length; ++childIdx)
+			{
+				numCutoffsByChildIdx[childIdx] = this.numCutoffsByChildIdx[childIdx] - other.numCutoffsByChildIdx[childIdx];
+			}
+			return new Snapshot(this.getNumNodes() - other.getNumNodes(),
+				this.getNumQuiescenceNodes() - other.getNumQuiescenceNodes(),
+				this.getNumEvaluations() - other.getNumEvaluations(),
+				this.getNumTTHits() - other.getNumTTHits(),
+				this.getNumTTMisses() - other.getNumTTMisses(),
+				numCutoffsByChildIdx,
+				this.getNumEvalCacheProbes() - other.getNumEvalCacheProbes(),
+				this.getNumEvalCacheHits() - other.getNumEvalCacheHits());
+		}
+
+		/**
+		 * The counters as key=value pairs, cutoffs as a histogram over child indices (the last one is "and later")
+		 */
+		@Override
+		public String toString()
+		{
+			StringBuilder builder = new StringBuilder();
+			builder.append("nodes=").append(this.getNumNodes())
+				.append(" qnodes=").append(this.getNumQuiescenceNodes())
+				.append(" evals=").append(this.getNumEvaluations())
+				.append(" tt_hit=").append(String.format("%.1f%%", 100.0 * this.getTTHitRate()))
+				.append(" cutoffs=").append(this.getNumCutoffs())
+				.append(" first_child=").append(String.format("%.1f%%", 100.0 * this.getFirstChildCutoffRate()))
+				.append(" by_child=[");
+			for(int childIdx = 0; childIdx < this.numCutoffsByChildIdx.length; ++childIdx)
+			{
+				builder.append(childIdx > 0 ? "," : "").append(this.numCutoffsByChildIdx[childIdx]);
+			}
+			builder.append(']');
+			if(this.getNumEvalCacheProbes() > 0)
+			{
+				builder.append(" evalcache_hit=").append(String.format("%.1f%%", 100.0 * this.getEvalCacheHitRate()));
+			}
+			return builder.toString();
+		}
+	}
+
+	private final LongAdder numNodes;
+	private final LongAdder numQuiescenceNodes;
+	private final LongAdder numEvaluations;
+	private final LongAdder numTTHits;
+	private final LongAdder numTTMisses;
+	private final LongAdder[] numCutoffsByChildIdx;
+
+	// has its own counters (null when the agent runs without one)
+	private final EvaluationCache evaluationCache;
+
+	/**
+	 * @param evaluationCache the evaluation cache in front of the searchers' evaluator, to report its hit rate
+	 *        with the rest (null if there is none)
+	 */
+	public SearchMetrics(EvaluationCache evaluationCache)
+	{
+		this.numNodes = new LongAdder();
+		this.numQuiescenceNodes = new LongAdder();
+		this.numEvaluations = new LongAdder();
+		this.numTTHits = new LongAdder();
+		this.numTTMisses = new LongAdder();
+		this.numCutoffsByChildIdx = new LongAdder[SearchMetrics.NUM_CUTOFF_CHILD_IDXS];
+		for(int childIdx = 0; childIdx < this.numCutoffsByChildIdx.length; ++childIdx)
+		{
+			this.numCutoffsByChildIdx[childIdx] = new LongAdder();
+		}
+		this.evaluationCache = evaluationCache;
+	}
+
+	public SearchMetrics()
+	{
+		this(null);
+	}
+
+	public EvaluationCache getEvaluationCache() { return this.evaluationCache; }
+
+	public void countNode() { this.numNodes.increment(); }
+
+	/**
+	 * A node below depth 0 (also counted by countNode)
+	 */
+	public void countQuiescenceNode() { this.numQuiescenceNodes.increment(); }
+
+	public void countEvaluation() { this.numEvaluations.increment(); }
+
+	public void countTTProbe(boolean isHit) { (isHit ? this.numTTHits : this.numTTMisses).increment(); }
+
+	/**
+	 * @param childIdx how many moves the node had searched before the one that caused the cutoff
+	 */
+	public void countCutoff(int childIdx)
+	{
+		this.numCutoffsByChildIdx[Math.min(childIdx, SearchMetrics.NUM_CUTOFF_CHILD_IDXS - 1)].increment();
+	}
+
+	/**
+	 * Sum up every counter. Counts still being added by running searches may or may not make it in
+	 */
+	public Snapshot snapshot()
+	{
+		long[] numCutoffsByChildIdx = new long[this.numCutoffsByChildIdx.length];
+		for(int childIdx = 0; childIdx < numCutoffsByChildIdx.length; ++childIdx)
+		{
+			numCutoffsByChildIdx[childIdx] = this.numCutoffsByChildIdx[childIdx].sum();
+		}
+		return new Snapshot(this.numNodes.sum(), this.numQuiescenceNodes.sum(), this.numEvaluations.sum(),
+			this.numTTHits.sum(), this.numTTMisses.sum(), numCutoffsByChildIdx,
+			this.getEvaluationCache() != null ? this.getEvaluationCache().getNumProbes() : 0L,
+			this.getEvaluationCache() != null ? this.getEvaluationCache().getNumHits() : 0L);
+	}
+
+}
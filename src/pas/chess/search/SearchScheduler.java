@@ -0,0 +1,94 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * The threads an agent runs its searches on, created once and kept for the whole game instead of a new executor
+ * per move (which leaked a thread every move when it was never shut down).
+ *
+ * The threads are daemons, so a scheduler that is never shut down does not keep the JVM alive. A search that ran
+ * out of time is cancelled with cancel(): that interrupts its thread, and the searchers poll the interrupt flag
+ * (PositionSearcher every few nodes, the minimax searchers at every node), so an abandoned search unwinds instead
+ * of eating CPU while the next move is being searched.
+ */
+public class SearchScheduler
+    extends Object
+{
+
+	private final String name;
+	private final int numThreads;
+	private final ExecutorService executor;
+
+	/**
+	 * @param name prefix of the thread names, e.g. the agent's class
+	 * @param numThreads how many searches may run at the same time
+	 */
+	public SearchScheduler(String name, int numThreads)
+	{
+		this.name = name;
+		this.numThreads = Math.max(1, numThreads);
+		this.executor = Executors.newFixedThreadPool(this.numThreads, new SearchThreadFactory(name));
+	}
+
+	public String getName() { return this.name; }
+	public int getNumThreads() { return this.numThreads; }
+	private ExecutorService getExecutor() { return this.executor; }
+
+	public <T> Future<T> submit(Callable<T> task) { return this.getExecutor().submit(task); }
+	public Future<?> submit(Runnable task) { return this.getExecutor().submit(task); }
+
+	/**
+	 * Give up on a submitted search: it is interrupted if running, and never started if still queued
+	 */
+	public static void cancel(Future<?> future)
+	{
+		if(future != null)
+		{
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Stop the threads, interrupting any search still running. Nothing can be submitted afterwards
+	 */
+	public void shutdown() { this.getExecutor().shutdownNow(); }
+
+	/**
+	 * Daemon threads named "<name>-search-<i>"
+	 */
+	private static class SearchThreadFactory
+        extends Object
+        implements ThreadFactory
+	{
+
+		private final String name;
+		private final AtomicInteger numThreads;
+
+		public SearchThreadFactory(String name)
+		{
+			this.name = name;
+			this.numThreads = new AtomicInteger(0);
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			Thread thread = new Thread(runnable, this.name + "-search-" + this.numThreads.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,24 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * Thrown from inside a search to unwind the whole recursion once the time budget for a move is spent
+ */
+public class SearchStoppedException
+    extends RuntimeException
+{
+
+	private static final long serialVersionUID = 1L;
+
+	public SearchStoppedException()
+	{
+		super(null, null, false, false); // no stack trace, we throw this a lot and never print it
+	}
+
+}
@@ -0,0 +1,75 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.position.Position;
+
+
+/**
+ * What AlphaBetaAgent needs from a search algorithm, so that different searchers (single threaded, parallel)
+ * can be swapped in with the searcher= agent option and compared on the same positions.
+ * Values are always from the max player's point of view.
+ */
+public interface Searcher
+{
+
+	/**
+	 * Search the given position to a fixed depth. If the search is stopped, the position is restored to what
+	 * it was when search was called and SearchStoppedException is thrown.
+	 * @param position the root, with the side to move to play
+	 * @param maxColor the color of the max player
+	 * @param depth how many plies to search
+	 * @param alpha
+	 * @param beta
+	 * @return the (max player) value of the root, getBestMove() holds the move that achieves it
+	 */
+	public double search(Position position, int maxColor, int depth, double alpha, double beta);
+
+	/**
+	 * The best move found at the root by the last call to search (Moves.NO_MOVE if the root had no moves)
+	 */
+	public int getBestMove();
+
+	/**
+	 * Make a running search throw SearchStoppedException as soon as possible
+	 */
+	public void requestStop();
+
+	public boolean isStopRequested();
+
+	/**
+	 * The number of nodes searched so far, over all calls to search
+	 */
+	public long getNumNodes();
+
+	/**
+	 * How many captures deep quiescence search may go below depth 0, 0 turns it off
+	 */
+	public void setMaxQuiescencePlies(int maxQuiescencePlies);
+
+	/**
+	 * What positions at depth 0 (and in quiescence search) are scored with, Evaluator.CUSTOM_HEURISTICS by default.
+	 * The quiescence margins come from it too (Evaluator.getDeltaMargin)
+	 */
+	public void setEvaluator(Evaluator evaluator);
+
+	/**
+	 * Turn null-move pruning on or off (off by default, since it changes values)
+	 */
+	public void setNullMovePruning(boolean nullMovePruning);
+
+	/**
+	 * Turn late move reductions on or off (off by default, since they change values)
+	 */
+	public void setLateMoveReductions(boolean lateMoveReductions);
+
+	/**
+	 * Count nodes, evaluations, cutoffs, ... into metrics from now on (null, the default, counts nothing)
+	 */
+	public void setMetrics(SearchMetrics metrics);
+
+}
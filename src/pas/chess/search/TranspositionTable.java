@@ -0,0 +1,213 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+
+
+// JAVA PROJECT IMPORTS
+
+
+/**
+ * A fixed-size hash table of search results keyed by Zobrist hash. Each bucket holds two entries:
+ * slot 0 keeps the deepest result (it is only overwritten by a search at least as deep, or by a search from
+ * an older move), slot 1 is always replaced. The table is stored as parallel primitive arrays so a probe or a
+ * store never allocates:
+ *     keys[slot]    the full 64-bit Zobrist key XOR scores[slot] XOR data[slot] (all three 0 means the slot is empty)
+ *     scores[slot]  Double.doubleToRawLongBits(score)
+ *     data[slot]    move (32 bits) | depth (8 bits) | bound (2 bits) | generation (8 bits)
+ *
+ * Scores are stored from the max player's point of view, exactly as DFSTreeNode.getMaxPlayerUtilityValue()
+ *
+ * The table is shared by all threads of a parallel search without any locking. Storing the key XORed with
+ * the rest of the entry means that a slot torn by two threads writing it at the same time no longer decodes
+ * to its own key, so a probe treats it as a miss instead of returning a score that belongs to another position.
+ */
+public class TranspositionTable
+    extends Object
+{
+
+	public static final int NO_MOVE = 0;
+
+	// how the stored score relates to the true minimax value of the position
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1; // true value >= score (the search failed high)
+	public static final int UPPER_BOUND = 2; // true value <= score (the search failed low)
+
+	public static final int MAX_DEPTH = 0xFF;
+
+	private static final int SLOTS_PER_BUCKET = 2;
+	private static final int BYTES_PER_SLOT = 3 * Long.BYTES;
+
+	private static final int DEPTH_SHIFT = 32;
+	private static final int BOUND_SHIFT = 40;
+	private static final int GENERATION_SHIFT = 48;
+	private static final long MOVE_MASK = 0xFFFFFFFFL;
+	private static final long DEPTH_MASK = 0xFFL;
+	private static final long BOUND_MASK = 0x3L;
+	private static final long GENERATION_MASK = 0xFFL;
+
+	/**
+	 * What a successful probe hands back. Searchers keep one of these around and reuse it for every probe
+	 */
+	public static class Entry
+        extends Object
+	{
+		private int move;
+		private int depth;
+		private int bound;
+		private double score;
+
+		public Entry()
+		{
+			this.move = TranspositionTable.NO_MOVE;
+			this.depth = 0;
+			this.bound = TranspositionTable.EXACT;
+			this.score = 0.0;
+		}
+
+		public int getMove() { return this.move; }
+		public int getDepth() { return this.depth; }
+		public int getBound() { return this.bound; }
+		public double getScore() { return this.score; }
+
+		/**
+		 * Can a search of the given depth and window be answered by this entry alone?
+		 */
+		public boolean isCutoff(int depth, double alpha, double beta)
+		{
+			if(this.getDepth() != depth)
+			{
+				return false;
+			}
+			switch(this.getBound())
+			{
+				case TranspositionTable.EXACT:
+					return true;
+				case TranspositionTable.LOWER_BOUND:
+					return this.getScore() >= beta;
+				case TranspositionTable.UPPER_BOUND:
+					return this.getScore() <= alpha;
+				default:
+					return false;
+			}
+		}
+	}
+
+	private final long[] keys;
+	private final long[] scores;
+	private final long[] data;
+	private final int bucketMask;
+	private int generation;
+
+	/**
+	 * @param sizeInMB the table uses the largest power-of-two number of buckets that fits in this many megabytes
+	 */
+	public TranspositionTable(int sizeInMB)
+	{
+		long bytes = Math.max(1L, (long)sizeInMB) * 1024L * 1024L;
+		long maxBuckets = Math.max(1L, bytes / (TranspositionTable.SLOTS_PER_BUCKET * TranspositionTable.BYTES_PER_SLOT));
+		int numBuckets = Integer.highestOneBit((int)Math.min(maxBuckets, 1 << 28));
+
+		this.keys = new long[numBuckets * TranspositionTable.SLOTS_PER_BUCKET];
+		this.scores = new long[numBuckets * TranspositionTable.SLOTS_PER_BUCKET];
+		this.data = new long[numBuckets * TranspositionTable.SLOTS_PER_BUCKET];
+		this.bucketMask = numBuckets - 1;
+		this.generation = 0;
+	}
+
+	public int getNumSlots() { return this.keys.length; }
+	public int getGeneration() { return this.generation; }
+
+	/**
+	 * Call once per move decision. Entries from older searches stay usable but lose their protection in slot 0
+	 */
+	public void newSearch() { this.generation = (this.generation + 1) & (int)TranspositionTable.GENERATION_MASK; }
+
+	public void clear()
+	{
+		Arrays.fill(this.keys, 0L);
+		Arrays.fill(this.scores, 0L);
+		Arrays.fill(this.data, 0L);
+	}
+
+	// the key the entry in slot was stored under, only equal to the key stored if the slot is not torn
+	private long getStoredKey(int slot)
+	{
+		return this.keys[slot] ^ this.scores[slot] ^ this.data[slot];
+	}
+
+	private int getFirstSlot(long key)
+	{
+		return ((int)key & this.bucketMask) * TranspositionTable.SLOTS_PER_BUCKET;
+	}
+
+	private static int getDepth(long data) { return (int)((data >>> DEPTH_SHIFT) & DEPTH_MASK); }
+	private static int getGeneration(long data) { return (int)((data >>> GENERATION_SHIFT) & GENERATION_MASK); }
+
+	/**
+	 * Look up a position
+	 * @param key the Zobrist key of the position
+	 * @param entry filled in on a hit
+	 * @return true if the position was found
+	 */
+	public boolean probe(long key, Entry entry)
+	{
+		int firstSlot = this.getFirstSlot(key);
+		for(int slot = firstSlot; slot < firstSlot + TranspositionTable.SLOTS_PER_BUCKET; ++slot)
+		{
+			// read every word once, another thread may be rewriting the slot while we look at it
+			long data = this.data[slot];
+			long score = this.scores[slot];
+			if((this.keys[slot] ^ score ^ data) == key && (data | score) != 0L)
+			{
+				entry.move = (int)(data & MOVE_MASK);
+				entry.depth = TranspositionTable.getDepth(data);
+				entry.bound = (int)((data >>> BOUND_SHIFT) & BOUND_MASK);
+				entry.score = Double.longBitsToDouble(score);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Remember the result of searching a position
+	 * @param key the Zobrist key of the position
+	 * @param depth the remaining depth the position was searched to
+	 * @param bound one of EXACT, LOWER_BOUND, UPPER_BOUND
+	 * @param score the (max player) value the search returned
+	 * @param move the best move found, or NO_MOVE
+	 */
+	public void store(long key, int depth, int bound, double score, int move)
+	{
+		depth = Math.min(depth, TranspositionTable.MAX_DEPTH);
+
+		int slot = this.getFirstSlot(key);
+		long deepData = this.data[slot];
+		boolean replaceDeep = this.getStoredKey(slot) == key
+			|| deepData == 0L
+			|| depth >= TranspositionTable.getDepth(deepData)
+			|| TranspositionTable.getGeneration(deepData) != this.getGeneration();
+		if(!replaceDeep)
+		{
+			slot += 1;
+		}
+
+		// a result without a best move (e.g. every move failed low) should not erase the move we already knew about
+		if(move == TranspositionTable.NO_MOVE && this.getStoredKey(slot) == key)
+		{
+			move = (int)(this.data[slot] & MOVE_MASK);
+		}
+
+		long scoreBits = Double.doubleToRawLongBits(score);
+		long data = ((long)move & MOVE_MASK)
+			| ((long)depth << DEPTH_SHIFT)
+			| ((long)bound << BOUND_SHIFT)
+			| ((long)this.getGeneration() << GENERATION_SHIFT);
+		this.keys[slot] = key ^ scoreBits ^ data;
+		this.scores[slot] = scoreBits;
+		this.data[slot] = data;
+	}
+
+}
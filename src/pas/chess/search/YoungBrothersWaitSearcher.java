@@ -0,0 +1,509 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.heuristics.Evaluator;
+import src.pas.chess.moveorder.CustomMoveOrderer;
+import src.pas.chess.position.AttackMap;
+import src.pas.chess.position.MoveGenerator;
+import src.pas.chess.position.Moves;
+import src.pas.chess.position.Position;
+
+
+/**
+ * Parallel alpha-beta with the "Young Brothers Wait" rule, run on a ForkJoinPool. At every node with at least
+ * MIN_SPLIT_DEPTH plies left, the first (eldest) move is searched on its own to get a bound, and then all the
+ * remaining (younger) moves are forked as RecursiveTasks with the window that bound gives. When one of them
+ * produces a cutoff, its siblings still running are cancelled: every task polls its own flag and its ancestors'.
+ * Nodes closer to the leaves are searched serially by a PositionSearcher owned by the worker thread, and only
+ * those use null-move pruning and late move reductions when they are turned on.
+ *
+ * The transposition table is shared by all workers (it is lock-free), and values mean exactly the same as
+ * with PositionSearcher, so both can be compared on the same positions with the searcher= agent option.
+ */
+public class YoungBrothersWaitSearcher
+    extends Object
+    implements Searcher
+{
+
+	// below this many plies a subtree is too small to be worth splitting
+	public static final int MIN_SPLIT_DEPTH = 3;
+
+	private final TranspositionTable transpositionTable;
+	private final ForkJoinPool pool;
+
+	// what each worker thread searches with. Kept here rather than in a ThreadLocal: the pool's threads outlive
+	// this searcher (the agent makes a new one every move), and their ThreadLocal maps would hold on to every
+	// old searcher's PositionSearchers and buffers
+	private final Map<Thread, Worker> workers;
+
+	private final LongAdder numNodes;
+	private Evaluator evaluator;
+	private int maxQuiescencePlies;
+	private boolean nullMovePruning;
+	private boolean lateMoveReductions;
+	private SearchMetrics metrics;
+	private int maxColor;
+	private volatile int bestMove;
+	private volatile boolean stopRequested;
+
+	/**
+	 * @param transpositionTable shared by every worker
+	 * @param pool the workers to search with
+	 */
+	public YoungBrothersWaitSearcher(TranspositionTable transpositionTable, ForkJoinPool pool)
+	{
+		this.transpositionTable = transpositionTable;
+		this.pool = pool;
+		this.workers = new ConcurrentHashMap<Thread, Worker>();
+		this.numNodes = new LongAdder();
+		this.evaluator = Evaluator.CUSTOM_HEURISTICS;
+		this.maxQuiescencePlies = PositionSearcher.DEFAULT_MAX_QUIESCENCE_PLIES;
+		this.nullMovePruning = false;
+		this.lateMoveReductions = false;
+		this.metrics = null;
+		this.maxColor = Position.WHITE;
+		this.bestMove = Moves.NO_MOVE;
+		this.stopRequested = false;
+	}
+
+	public TranspositionTable getTranspositionTable() { return this.transpositionTable; }
+	public ForkJoinPool getPool() { return this.pool; }
+	public Evaluator getEvaluator() { return this.evaluator; }
+	public int getMaxQuiescencePlies() { return this.maxQuiescencePlies; }
+	public boolean usesNullMovePruning() { return this.nullMovePruning; }
+	public boolean usesLateMoveReductions() { return this.lateMoveReductions; }
+	public SearchMetrics getMetrics() { return this.metrics; }
+	public int getMaxColor() { return this.maxColor; }
+
+	@Override
+	public long getNumNodes() { return this.numNodes.sum(); }
+	@Override
+	public boolean isStopRequested() { return this.stopRequested; }
+	@Override
+	public int getBestMove() { return this.bestMove; }
+	@Override
+	public void requestStop() { this.stopRequested = true; }
+	@Override
+	public void setMaxQuiescencePlies(int maxQuiescencePlies) { this.maxQuiescencePlies = Math.max(0, maxQuiescencePlies); }
+	@Override
+	public void setEvaluator(Evaluator evaluator) { this.evaluator = evaluator; }
+	@Override
+	public void setNullMovePruning(boolean nullMovePruning) { this.nullMovePruning = nullMovePruning; }
+	@Override
+	public void setLateMoveReductions(boolean lateMoveReductions) { this.lateMoveReductions = lateMoveReductions; }
+	@Override
+	public void setMetrics(SearchMetrics metrics) { this.metrics = metrics; }
+
+	@Override
+	public double search(Position position, int maxColor, int depth, double alpha, double beta)
+	{
+		this.maxColor = maxColor;
+		this.bestMove = Moves.NO_MOVE;
+
+		// the root task works on its own copy, so the caller's position is never touched
+		NodeTask root = new NodeTask(null, position.copy(), Moves.NO_MOVE, depth, 0, alpha, beta);
+		double value = this.getPool().invoke(root);
+		if(root.isAborted())
+		{
+			throw new SearchStoppedException();
+		}
+		return value;
+	}
+
+	private Worker getWorker()
+	{
+		return this.workers.computeIfAbsent(Thread.currentThread(), thread -> new Worker(this.getTranspositionTable()));
+	}
+
+	/**
+	 * What one worker thread searches with: a serial searcher (a thread only ever runs one serial search at a
+	 * time), and the buffers of the split nodes it is in the middle of. Those nest like a call stack: a thread
+	 * leaves a split node only after everything it ran inside it (the eldest brother's subtree, or tasks it
+	 * helped with while joining) has left theirs, so split node i on the stack can use frame i.
+	 */
+	private static class Worker
+	    extends Object
+	{
+		private final PositionSearcher serialSearcher;
+		private int[][] moveLists;
+		private int[][] scoreLists;
+		private AttackMap[] attackMaps;
+		private TranspositionTable.Entry[] ttEntries;
+		private int numFrames; // in use
+
+		public Worker(TranspositionTable transpositionTable)
+		{
+			this.serialSearcher = new PositionSearcher(transpositionTable);
+			this.moveLists = new int[0][];
+			this.scoreLists = new int[0][];
+			this.attackMaps = new AttackMap[0];
+			this.ttEntries = new TranspositionTable.Entry[0];
+			this.numFrames = 0;
+		}
+
+		public PositionSearcher getSerialSearcher() { return this.serialSearcher; }
+		public int[] getMoves(int frame) { return this.moveLists[frame]; }
+		public int[] getScores(int frame) { return this.scoreLists[frame]; }
+		public AttackMap getAttackMap(int frame) { return this.attackMaps[frame]; }
+		public TranspositionTable.Entry getTTEntry(int frame) { return this.ttEntries[frame]; }
+
+		/**
+		 * @return the frame of the split node the thread enters
+		 */
+		public int pushFrame()
+		{
+			int frame = this.numFrames++;
+			if(frame == this.moveLists.length)
+			{
+				int capacity = Math.max(8, 2 * frame);
+				this.moveLists = Arrays.copyOf(this.moveLists, capacity);
+				this.scoreLists = Arrays.copyOf(this.scoreLists, capacity);
+				this.attackMaps = Arrays.copyOf(this.attackMaps, capacity);
+				this.ttEntries = Arrays.copyOf(this.ttEntries, capacity);
+				for(int frameIdx = frame; frameIdx < capacity; ++frameIdx)
+				{
+					this.moveLists[frameIdx] = new int[Moves.MAX_MOVES];
+					this.scoreLists[frameIdx] = new int[Moves.MAX_MOVES];
+					this.attackMaps[frameIdx] = new AttackMap();
+					this.ttEntries[frameIdx] = new TranspositionTable.Entry();
+				}
+			}
+			return frame;
+		}
+
+		public void popFrame() { --this.numFrames; }
+	}
+
+	/**
+	 * Search one node. A task that is cancelled (or whose search is stopped) marks itself aborted and returns NaN,
+	 * its value must then be ignored.
+	 *
+	 * A child does not get a fixed window when it is created: it reads its parent's window when it starts, and
+	 * reports its value back to the parent as soon as it is done. So a brother that starts late already benefits
+	 * from the bounds its finished brothers found, and the first brother to cause a cutoff cancels the rest.
+	 */
+	private class NodeTask
+        extends RecursiveTask<Double>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final NodeTask parent;
+		private final Position position;
+		private final int move; // the move that led here from the parent
+		private final int depth;
+		private final int ply;
+
+		// the window this node was searched with, fixed once compute starts
+		private double alpha;
+		private double beta;
+
+		// the running result, shared with the children that report to it (guarded by this)
+		private double liveAlpha;
+		private double liveBeta;
+		private double bestValue;
+		private int bestMove;
+		private boolean isMaxPlayer;
+		private NodeTask[] children;
+
+		private volatile boolean cancelled;
+		private boolean aborted;
+
+		public NodeTask(NodeTask parent, Position position, int move, int depth, int ply, double alpha, double beta)
+		{
+			this.parent = parent;
+			this.position = position;
+			this.move = move;
+			this.depth = depth;
+			this.ply = ply;
+			this.alpha = alpha;
+			this.beta = beta;
+			this.liveAlpha = alpha;
+			this.liveBeta = beta;
+			this.bestValue = Double.NaN;
+			this.bestMove = Moves.NO_MOVE;
+			this.isMaxPlayer = false;
+			this.children = null;
+			this.cancelled = false;
+			this.aborted = false;
+		}
+
+		public NodeTask getParentTask() { return this.parent; }
+		public Position getPosition() { return this.position; }
+		public int getMove() { return this.move; }
+		public int getDepth() { return this.depth; }
+		public int getPly() { return this.ply; }
+		public boolean isAborted() { return this.aborted; }
+
+		public void cancelSearch() { this.cancelled = true; }
+
+		/**
+		 * Has this task, any of its ancestors, or the whole search been told to stop?
+		 */
+		public boolean isSearchCancelled()
+		{
+			for(NodeTask task = this; task != null; task = task.getParentTask())
+			{
+				if(task.cancelled)
+				{
+					return true;
+				}
+			}
+			return YoungBrothersWaitSearcher.this.isStopRequested();
+		}
+
+		private synchronized double getLiveAlpha() { return this.liveAlpha; }
+		private synchronized double getLiveBeta() { return this.liveBeta; }
+		private synchronized boolean isCutoff() { return this.liveAlpha >= this.liveBeta; }
+
+		/**
+		 * A child finished: fold its value into our result, and cancel the other children on a cutoff
+		 */
+		private synchronized void reportChildValue(double value, int move)
+		{
+			// already cut off: nothing a late brother found can matter any more
+			if(this.liveAlpha >= this.liveBeta)
+			{
+				return;
+			}
+
+			if(this.bestMove == Moves.NO_MOVE || (this.isMaxPlayer ? value > this.bestValue : value < this.bestValue))
+			{
+				this.bestValue = value;
+				this.bestMove = move;
+			}
+			if(this.isMaxPlayer)
+			{
+				this.liveAlpha = Math.max(this.liveAlpha, this.bestValue);
+			} else
+			{
+				this.liveBeta = Math.min(this.liveBeta, this.bestValue);
+			}
+
+			if(this.liveAlpha >= this.liveBeta && this.children != null)
+			{
+				for(NodeTask child : this.children)
+				{
+					child.cancelSearch();
+				}
+			}
+		}
+
+		@Override
+		protected Double compute()
+		{
+			try
+			{
+				if(this.getParentTask() != null)
+				{
+					this.alpha = this.getParentTask().getLiveAlpha();
+					this.beta = this.getParentTask().getLiveBeta();
+
+					// a brother caused a cutoff before we even started. Searching with an empty window
+					// would not give a meaningful bound, so we act as if we had been cancelled
+					if(this.alpha >= this.beta)
+					{
+						throw new SearchStoppedException();
+					}
+				}
+
+				double value = this.getDepth() < MIN_SPLIT_DEPTH
+					? this.searchSerially()
+					: this.searchInParallel();
+				if(this.getParentTask() != null)
+				{
+					this.getParentTask().reportChildValue(value, this.getMove());
+				}
+				return value;
+			} catch(SearchStoppedException e)
+			{
+				this.aborted = true;
+				return Double.NaN;
+			}
+		}
+
+		private double searchSerially()
+		{
+			PositionSearcher searcher = YoungBrothersWaitSearcher.this.getWorker().getSerialSearcher();
+			searcher.setEvaluator(YoungBrothersWaitSearcher.this.getEvaluator());
+			searcher.setMaxQuiescencePlies(YoungBrothersWaitSearcher.this.getMaxQuiescencePlies());
+			searcher.setNullMovePruning(YoungBrothersWaitSearcher.this.usesNullMovePruning());
+			searcher.setLateMoveReductions(YoungBrothersWaitSearcher.this.usesLateMoveReductions());
+			searcher.setMetrics(YoungBrothersWaitSearcher.this.getMetrics());
+			searcher.setExternalStop(this::isSearchCancelled);
+
+			long numNodesBefore = searcher.getNumNodes();
+			try
+			{
+				double value = searcher.search(this.getPosition(), YoungBrothersWaitSearcher.this.getMaxColor(),
+					this.getDepth(), this.alpha, this.beta);
+				if(this.getPly() == 0)
+				{
+					YoungBrothersWaitSearcher.this.bestMove = searcher.getBestMove();
+				}
+				return value;
+			} finally
+			{
+				searcher.setExternalStop(null);
+				YoungBrothersWaitSearcher.this.numNodes.add(searcher.getNumNodes() - numNodesBefore);
+			}
+		}
+
+		private double searchInParallel()
+		{
+			if(this.isSearchCancelled())
+			{
+				throw new SearchStoppedException();
+			}
+			YoungBrothersWaitSearcher.this.numNodes.increment();
+			SearchMetrics metrics = YoungBrothersWaitSearcher.this.getMetrics();
+			if(metrics != null)
+			{
+				metrics.countNode();
+			}
+
+			Worker worker = YoungBrothersWaitSearcher.this.getWorker();
+			int frame = worker.pushFrame();
+			try
+			{
+				return this.searchSplitNode(worker, frame);
+			} finally
+			{
+				worker.popFrame();
+			}
+		}
+
+		private double searchSplitNode(Worker worker, int frame)
+		{
+			Position position = this.getPosition();
+			int maxColor = YoungBrothersWaitSearcher.this.getMaxColor();
+			SearchMetrics metrics = YoungBrothersWaitSearcher.this.getMetrics();
+			int[] moves = worker.getMoves(frame);
+			int numMoves = MoveGenerator.generateLegalMoves(position, moves);
+			if(numMoves == 0)
+			{
+				return PositionSearcher.getNoMovesUtility(position, maxColor);
+			}
+			if(position.isLoneKings())
+			{
+				return 0.0;
+			}
+
+			// same transposition table rules as PositionSearcher
+			TranspositionTable transpositionTable = YoungBrothersWaitSearcher.this.getTranspositionTable();
+			TranspositionTable.Entry ttEntry = worker.getTTEntry(frame);
+			long key = position.getKey();
+			int ttMove = Moves.NO_MOVE;
+			boolean isTTHit = transpositionTable.probe(key, ttEntry);
+			if(metrics != null)
+			{
+				metrics.countTTProbe(isTTHit);
+			}
+			if(isTTHit)
+			{
+				ttMove = ttEntry.getMove();
+				if(this.getPly() > 0 && ttEntry.isCutoff(this.getDepth(), this.alpha, this.beta))
+				{
+					return ttEntry.getScore();
+				}
+			}
+			AttackMap attackMap = worker.getAttackMap(frame);
+			attackMap.setPosition(position);
+			CustomMoveOrderer.order(attackMap, moves, numMoves, worker.getScores(frame), ttMove);
+
+			synchronized(this)
+			{
+				this.liveAlpha = this.alpha;
+				this.liveBeta = this.beta;
+				this.isMaxPlayer = position.getSideToMove() == maxColor;
+			}
+
+			// the eldest brother first, on its own and on our own position (make/unmake), to get a bound for the others
+			NodeTask eldest = new NodeTask(this, position, moves[0], this.getDepth() - 1, this.getPly() + 1,
+				this.alpha, this.beta);
+			position.makeMove(moves[0]);
+			try
+			{
+				eldest.compute();
+			} finally
+			{
+				position.unmakeMove();
+			}
+			if(eldest.isAborted())
+			{
+				throw new SearchStoppedException();
+			}
+
+			// then every younger brother at once, each on its own copy. Most of the time the eldest already cut
+			// off, and none of them is ever made
+			if(!this.isCutoff() && numMoves > 1)
+			{
+				NodeTask[] children = new NodeTask[numMoves - 1];
+				for(int moveIdx = 1; moveIdx < numMoves; ++moveIdx)
+				{
+					Position child = position.copy();
+					child.makeMove(moves[moveIdx]);
+					children[moveIdx - 1] = new NodeTask(this, child, moves[moveIdx], this.getDepth() - 1, this.getPly() + 1,
+						this.alpha, this.beta);
+				}
+				synchronized(this)
+				{
+					this.children = children;
+				}
+
+				for(NodeTask child : children)
+				{
+					child.fork();
+				}
+				boolean isAnyAborted = false;
+				for(int childIdx = children.length - 1; childIdx >= 0; --childIdx)
+				{
+					children[childIdx].join();
+					isAnyAborted |= children[childIdx].isAborted();
+				}
+
+				// an aborted brother without a cutoff here means we were stopped from above
+				if(isAnyAborted && !this.isCutoff())
+				{
+					throw new SearchStoppedException();
+				}
+			}
+
+			double bestValue;
+			int bestMove;
+			synchronized(this)
+			{
+				bestValue = this.bestValue;
+				bestMove = this.bestMove;
+			}
+
+			int bound = TranspositionTable.EXACT;
+			if(bestValue <= this.alpha)
+			{
+				bound = TranspositionTable.UPPER_BOUND;
+			} else if(bestValue >= this.beta)
+			{
+				bound = TranspositionTable.LOWER_BOUND;
+			}
+			transpositionTable.store(key, this.getDepth(), bound, bestValue, bestMove);
+
+			if(this.getPly() == 0)
+			{
+				YoungBrothersWaitSearcher.this.bestMove = bestMove;
+			}
+			return bestValue;
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+package src.pas.chess.search;
+
+
+// SYSTEM IMPORTS
+import java.util.Random;
+
+
+// JAVA PROJECT IMPORTS
+import src.pas.chess.position.Position;
+import src.pas.chess.position.Squares;
+
+
+/**
+ * 64-bit Zobrist hashing of a chess position. Every (piece, square) pair, the side to move, and every
+ * combination of castling rights gets a random 64-bit key, and the hash of a position is the xor of the keys
+ * of everything that is true about it. Two positions that are reached by different move orders
+ * (transpositions) therefore hash to the same value, and Position can update its key incrementally
+ * as moves are made and unmade.
+ *
+ * The pawn key is the same hash over the pawns alone, it identifies a pawn structure (see PawnHashTable).
+ *
+ * Pieces are indexed by Position piece code (color * Position.NUM_PIECE_TYPES + type) and squares use the
+ * numbering of Squares.
+ */
+public class Zobrist
+    extends Object
+{
+
+	// fixed seed so hashes (and therefore search behavior) are reproducible between runs
+	private static final long SEED = 0x5DEECE66DL;
+
+	private static final long[][] PIECE_SQUARE_KEYS = new long[Position.NUM_COLORS * Position.NUM_PIECE_TYPES][Squares.NUM_SQUARES];
+	private static final long[] CASTLING_KEYS = new long[Position.ALL_CASTLING_RIGHTS + 1];
+	private static final long BLACK_TO_MOVE_KEY;
+
+	static
+	{
+		Random random = new Random(Zobrist.SEED);
+		for(int piece = 0; piece < PIECE_SQUARE_KEYS.length; ++piece)
+		{
+			for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+			{
+				PIECE_SQUARE_KEYS[piece][square] = random.nextLong();
+			}
+		}
+		for(int rights = 0; rights < CASTLING_KEYS.length; ++rights)
+		{
+			CASTLING_KEYS[rights] = random.nextLong();
+		}
+		BLACK_TO_MOVE_KEY = random.nextLong();
+	}
+
+	public static long getPieceSquareKey(int piece, int square) { return PIECE_SQUARE_KEYS[piece][square]; }
+	public static long getCastlingKey(int castlingRights) { return CASTLING_KEYS[castlingRights]; }
+	public static long getBlackToMoveKey() { return BLACK_TO_MOVE_KEY; }
+
+	/**
+	 * Hash a position from scratch. Position keeps its key up to date incrementally, this is the reference
+	 * that the incremental key has to agree with
+	 * @param position
+	 * @return the 64-bit Zobrist key of the position
+	 */
+	public static long hash(Position position)
+	{
+		long key = 0L;
+		for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+		{
+			if(!position.isEmpty(square))
+			{
+				key ^= Zobrist.getPieceSquareKey(position.getPiece(square), square);
+			}
+		}
+		key ^= Zobrist.getCastlingKey(position.getCastlingRights());
+		if(position.getSideToMove() == Position.BLACK)
+		{
+			key ^= Zobrist.getBlackToMoveKey();
+		}
+		return key;
+	}
+
+	/**
+	 * Hash only the pawns of a position, the reference for Position.getPawnKey()
+	 */
+	public static long hashPawns(Position position)
+	{
+		long key = 0L;
+		for(int color = 0; color < Position.NUM_COLORS; ++color)
+		{
+			int pawn = Position.makePiece(color, Position.PAWN);
+			for(int square = 0; square < Squares.NUM_SQUARES; ++square)
+			{
+				if(position.getPiece(square) == pawn)
+				{
+					key ^= Zobrist.getPieceSquareKey(pawn, square);
+				}
+			}
+		}
+		return key;
+	}
+
+}